@@ -0,0 +1,250 @@
+package data;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ * Metriche delle classi di una release memorizzate per colonne. Size ed Age hanno una colonna densa
+ * (un int per classe); le metriche calcolate dai commit hanno colonne sparse, con una riga soltanto per
+ * le classi toccate da almeno un commit nella release: le classi non toccate occupano soltanto la size.
+ * Le classi sono identificate dalla loro posizione nella lista della release (vedi GitRelease.setClassList()).
+ * Gli autori di ogni riga sono un piccolo insieme ordinato di id dello StringDictionary.AUTHORS.
+ * Non è thread-safe: ogni release viene modificata da un solo thread alla volta (vedi git.MetricsEngine).
+ */
+public class MetricStore {
+
+	public static final int LOC_TOUCHED = 0;
+	public static final int NUMBER_REVISIONS = 1;
+	public static final int NUMBER_BUG_FIXES = 2;
+	public static final int LOC_ADDED = 3;
+	public static final int MAX_LOC_ADDED = 4;
+	public static final int AVG_LOC_ADDED = 5;
+	public static final int CHG_SET_SIZE = 6;
+	public static final int MAX_CHG_SET_SIZE = 7;
+	public static final int AVG_CHG_SET_SIZE = 8;
+	public static final int N_AUTH = 9;
+	public static final int CHURN = 10;
+	public static final int MAX_CHURN = 11;
+	public static final int AVG_CHURN = 12;
+	public static final int COUNTER_LOC_ADDED = 13;
+	public static final int COUNTER_CHURN = 14;
+	public static final int COUNTER_CHG_SET = 15;
+	public static final int COLUMNS = 16;
+
+	private static final int NO_ROW = -1;
+
+	private int[] size;
+	private int[] age;
+	private int[] rows;				// Riga sparsa di ogni classe, NO_ROW se la classe non è stata toccata
+	private int[][] columns;		// columns[colonna][riga]
+	private int[][] authors;			// authors[riga], id ordinati degli autori (vedi authorCounts)
+	private int[] authorCounts;
+	private int touched;
+
+	public MetricStore(int classes) {
+		this.size = new int[classes];
+		this.age = new int[classes];
+		this.rows = new int[classes];
+		Arrays.fill(this.rows, NO_ROW);
+		this.columns = new int[COLUMNS][0];
+		this.authors = new int[0][];
+		this.authorCounts = new int[0];
+	}
+
+
+	/*
+	 * Ritorna il valore della colonna sparsa per la classe, 0 se la classe non è stata toccata
+	 */
+	public int get(int index, int column) {
+		int row = rows[index];
+		return row == NO_ROW ? 0 : columns[column][row];
+	}
+
+
+	/*
+	 * Imposta il valore della colonna sparsa per la classe, allocando la riga soltanto se il valore non è 0
+	 */
+	public void set(int index, int column, int value) {
+		int row = rows[index];
+		if (row == NO_ROW) {
+			if (value == 0) {
+				return;
+			}
+			row = allocateRow(index);
+		}
+		columns[column][row] = value;
+	}
+
+
+	/*
+	 * Ritorna gli id degli autori che hanno toccato la classe nella release
+	 */
+	public int[] getAuthors(int index) {
+		int row = rows[index];
+		return row == NO_ROW ? new int[0] : Arrays.copyOf(authors[row], authorCounts[row]);
+	}
+
+
+	/*
+	 * Aggiunge l'id di un autore alla classe, ritorna false se era già presente
+	 */
+	public boolean addAuthor(int index, int authorId) {
+		int row = rows[index] == NO_ROW ? allocateRow(index) : rows[index];
+		int[] set = authors[row];
+		int count = authorCounts[row];
+		int position = Arrays.binarySearch(set, 0, count, authorId);
+		if (position >= 0) {
+			return false;
+		}
+		position = -position - 1;
+		if (count == set.length) {
+			set = Arrays.copyOf(set, Math.max(2, count * 2));
+			authors[row] = set;
+		}
+		System.arraycopy(set, position, set, position + 1, count - position);
+		set[position] = authorId;
+		authorCounts[row] = count + 1;
+		return true;
+	}
+
+
+	/*
+	 * Copia tutte le metriche della classe fromIndex di un altro store nella classe toIndex.
+	 * Con withSize = false vengono copiate soltanto le metriche calcolate dai commit
+	 */
+	public void copy(MetricStore from, int fromIndex, int toIndex, boolean withSize) {
+		if (withSize) {
+			size[toIndex] = from.size[fromIndex];
+			age[toIndex] = from.age[fromIndex];
+		}
+		if (from.rows[fromIndex] == NO_ROW) {
+			return;
+		}
+		for (int c = 0; c < COLUMNS; c++) {
+			set(toIndex, c, from.get(fromIndex, c));
+		}
+		int fromRow = from.rows[fromIndex];
+		for (int i = 0; i < from.authorCounts[fromRow]; i++) {
+			addAuthor(toIndex, from.authors[fromRow][i]);
+		}
+	}
+
+
+	/*
+	 * Scrive tutto lo store, compresi gli id degli autori: il formato vale soltanto all'interno del run
+	 * (vedi git.ReleaseSpill)
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(size.length);
+		out.writeInt(touched);
+		for (int i = 0; i < size.length; i++) {
+			out.writeInt(size[i]);
+			out.writeInt(age[i]);
+			out.writeInt(rows[i]);
+		}
+		for (int row = 0; row < touched; row++) {
+			for (int c = 0; c < COLUMNS; c++) {
+				out.writeInt(columns[c][row]);
+			}
+			out.writeInt(authorCounts[row]);
+			for (int a = 0; a < authorCounts[row]; a++) {
+				out.writeInt(authors[row][a]);
+			}
+		}
+	}
+
+
+	/*
+	 * Legge uno store scritto con write(), a partire dalla posizione corrente del buffer
+	 */
+	public static MetricStore read(ByteBuffer in) {
+		MetricStore store = new MetricStore(in.getInt());
+		int rowCount = in.getInt();
+		for (int i = 0; i < store.size.length; i++) {
+			store.size[i] = in.getInt();
+			store.age[i] = in.getInt();
+			store.rows[i] = in.getInt();
+		}
+		store.touched = rowCount;
+		store.columns = new int[COLUMNS][rowCount];
+		store.authors = new int[rowCount][];
+		store.authorCounts = new int[rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			for (int c = 0; c < COLUMNS; c++) {
+				store.columns[c][row] = in.getInt();
+			}
+			int count = in.getInt();
+			store.authors[row] = new int[Math.max(1, count)];
+			store.authorCounts[row] = count;
+			for (int a = 0; a < count; a++) {
+				store.authors[row][a] = in.getInt();
+			}
+		}
+		return store;
+	}
+
+
+	/*
+	 * Stima dei byte occupati sullo heap dallo store
+	 */
+	public long estimateBytes() {
+		long bytes = 12L * size.length + 4L * COLUMNS * columns[0].length;
+		for (int row = 0; row < touched; row++) {
+			bytes += 16 + 4L * authors[row].length;
+		}
+		return bytes;
+	}
+
+
+	/*
+	 * Crea la riga sparsa della classe, ingrandendo le colonne se necessario
+	 */
+	private int allocateRow(int index) {
+		int row = touched++;
+		if (row == columns[0].length) {
+			int capacity = Math.max(8, row * 2);
+			for (int c = 0; c < COLUMNS; c++) {
+				columns[c] = Arrays.copyOf(columns[c], capacity);
+			}
+			authors = Arrays.copyOf(authors, capacity);
+			authorCounts = Arrays.copyOf(authorCounts, capacity);
+		}
+		authors[row] = new int[1];
+		rows[index] = row;
+		return row;
+	}
+
+
+	/*===============================================================================================
+	 * Getters & Setters
+	 */
+	public int getSize(int index) {
+		return size[index];
+	}
+
+	public void setSize(int index, int value) {
+		size[index] = value;
+	}
+
+	public int getAge(int index) {
+		return age[index];
+	}
+
+	public void setAge(int index, int value) {
+		age[index] = value;
+	}
+
+	public boolean isTouched(int index) {
+		return rows[index] != NO_ROW;
+	}
+
+	public int getClassCount() {
+		return size.length;
+	}
+
+	public int getTouchedCount() {
+		return touched;
+	}
+}
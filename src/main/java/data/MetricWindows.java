@@ -0,0 +1,162 @@
+package data;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import git.GitRelease;
+
+/*
+ * Somme prefisse delle metriche additive di ogni classe (per path), nell'ordine dei commit. Per ogni path
+ * viene salvato il valore cumulativo di ogni metrica dopo ogni revisione e, per ogni release, il numero di
+ * revisioni fino alla fine della release: la somma di una metrica su un intervallo qualsiasi di release
+ * (una release, dalla nascita della classe, finestra mobile) si ottiene quindi in O(1) per classe.
+ * I path sono indicizzati per id dello StringDictionary.PATHS.
+ * Le revisioni vanno aggiunte in ordine di release, completando ogni release con completeRelease() oppure
+ * tutte alla fine con build().
+ */
+public class MetricWindows {
+
+	public static final int REVISIONS = 0;
+	public static final int LOC_ADDED = 1;
+	public static final int CHURN = 2;
+	public static final int BUG_FIXES = 3;
+	public static final int CHG_SET_SIZE = 4;
+	private static final int METRICS = 5;
+
+	private int releaseCount;
+	private Map<GitRelease, Integer> positions;
+	private PathSums[] sums;			// sums[id del path], null se il path non ha revisioni
+	private int pathCount;
+	private int completed;			// Numero di release completate (vedi completeRelease())
+
+	public MetricWindows(List<GitRelease> releases) {
+		this.releaseCount = releases.size();
+		this.positions = new IdentityHashMap<>();
+		for (int i = 0; i < releases.size(); i++) {
+			this.positions.put(releases.get(i), i);
+		}
+		this.sums = new PathSums[StringDictionary.PATHS.size()];
+	}
+
+
+	/*
+	 * Aggiunge una revisione della classe nella release in posizione release
+	 */
+	public void addRevision(int pathId, int release, int locAdded, int churn, boolean bugFix, int chgSetSize) {
+		if (pathId >= sums.length) {
+			sums = Arrays.copyOf(sums, Math.max(pathId + 1, sums.length * 2));
+		}
+		PathSums s = sums[pathId];
+		if (s == null) {
+			s = new PathSums(releaseCount);
+			sums[pathId] = s;
+			pathCount++;
+		}
+		s.add(release, new long[] {1, locAdded, churn, bugFix ? 1 : 0, chgSetSize});
+	}
+
+
+	/*
+	 * Salva per ogni path l'indice di fine della release in posizione release. Va chiamato, in ordine di
+	 * release, dopo aver aggiunto tutte le revisioni della release: da quel momento le somme fino alla
+	 * release sono disponibili, anche se le release successive non sono ancora state aggiunte
+	 */
+	public void completeRelease(int release) {
+		for (PathSums s : sums) {
+			if (s != null) {
+				s.releaseEnd[release + 1] = s.size;
+			}
+		}
+		completed = release + 1;
+	}
+
+
+	/*
+	 * Completa tutte le release non ancora completate. Va chiamato dopo aver aggiunto tutte le revisioni
+	 */
+	public void build() {
+		for (int r = completed; r < releaseCount; r++) {
+			completeRelease(r);
+		}
+	}
+
+
+	/*
+	 * Ritorna la somma della metrica per il path sulle release dalla posizione from alla posizione to (incluse)
+	 */
+	public long getSum(String path, int metric, int from, int to) {
+		return getSum(StringDictionary.PATHS.lookup(path), metric, from, to);
+	}
+
+	public long getSum(int pathId, int metric, int from, int to) {
+		PathSums s = pathId < 0 || pathId >= sums.length ? null : sums[pathId];
+		from = Math.max(0, from);
+		to = Math.min(releaseCount - 1, to);
+		if (s == null || from > to) {
+			return 0;
+		}
+		return s.cumulative[metric][s.releaseEnd[to + 1]] - s.cumulative[metric][s.releaseEnd[from]];
+	}
+
+
+	/*
+	 * Ritorna la somma della metrica della classe sulle ultime windowSize release, fino alla release della
+	 * classe inclusa. Con windowSize <= 0 la somma parte dalla prima release (cumulativa)
+	 */
+	public long getWindowSum(ProjectClass projectClass, int metric, int windowSize) {
+		int to = getPosition(projectClass.getRelease());
+		if (to < 0) {
+			return 0;
+		}
+		int from = windowSize <= 0 ? 0 : to - windowSize + 1;
+		return getSum(projectClass.getPathId(), metric, from, to);
+	}
+
+
+	/*===============================================================================================
+	 * Getters & Setters
+	 */
+	public int getPosition(GitRelease release) {
+		Integer position = positions.get(release);
+		return position == null ? -1 : position;
+	}
+
+	public int getReleaseCount() {
+		return releaseCount;
+	}
+
+	public int getPathCount() {
+		return pathCount;
+	}
+
+
+	/*
+	 * Revisioni di un path: release di ogni revisione e valori cumulativi di ogni metrica (cumulative[m][0] = 0)
+	 */
+	private static class PathSums {
+		private int size;
+		private int[] releases = new int[4];
+		private long[][] cumulative = new long[METRICS][5];
+		private int[] releaseEnd;		// releaseEnd[r + 1] = revisioni fino alla release r, per le release completate
+
+		PathSums(int releaseCount) {
+			this.releaseEnd = new int[releaseCount + 1];
+		}
+
+		void add(int release, long[] values) {
+			if (size == releases.length) {
+				releases = Arrays.copyOf(releases, size * 2);
+				for (int m = 0; m < METRICS; m++) {
+					cumulative[m] = Arrays.copyOf(cumulative[m], size * 2 + 1);
+				}
+			}
+			releases[size] = release;
+			for (int m = 0; m < METRICS; m++) {
+				cumulative[m][size + 1] = cumulative[m][size] + values[m];
+			}
+			size++;
+		}
+	}
+}
@@ -1,44 +1,52 @@
 package data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
+import java.io.InputStream;
 
 import org.apache.log4j.Logger;
 import org.eclipse.jgit.diff.Edit;
 import org.eclipse.jgit.diff.EditList;
 import org.eclipse.jgit.errors.LargeObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 
 public class Metrics {
 
-	private int size;				//  1) Numero di righe di codice, escluse linee di commento e linee vuote
-	private int locTouched; 		//  2) Numero di righe di codice modificate nel commit
-	private int numberRevisions; 	//  3) Numero di revisioni in cui è stato modificata la classe (nella release)
-	private int numberBugFixes; 	//  4) Numero di commit di tipo FixBug che hanno toccato la classe (nella release)
-	private int locAdded; 			//  5) Numero di righe di codice aggiunte nel commit
-	private int maxLocAdded; 		//  6) Massimo numero di LocAdded tra tutte le revisioni che hanno toccato la classe (nella release)
-	private int avgLocAdded; 		//  7) Media tra tutti i LocAdded delle revisioni che hanno toccato la classe (nella release)
-	private int age; 				//  8) Differenza in settimane tra la data di creazione della classe e la data della release corrente
-	private int chgSetSize;			//  9) Numero di file committed insieme alla classe
-	private int maxChgSetSize;		//  10) Numero massimo file committed insieme alla classe
-	private int avgChgSetSize;		//  11) Numero medio file committed insieme alla classe
-	private int nAuth;				//  12) Numero di autori che hanno toccato la classe (nella release)
-	private int churn; 				//  13) Differenza tra LocAdded e LocDeleted
-	private int maxChurn; 			//  14) Massimo tra tutti i churn delle revisioni (nella release)
-	private int avgChurn; 			//  15) Media tra tutti i churn delle revisioni (nella release)
-	
-	private int counterLocAdded;
-	private int counterChurn;
-	private int counterChgSet;
-	private List<String> listOfAuthors = new ArrayList<>();
+	/*
+	 * Vista sulle metriche di una classe in un MetricStore (la riga index dello store):
+	 *  1) Size: numero di righe di codice, escluse linee di commento e linee vuote
+	 *  2) LocTouched: numero di righe di codice modificate nel commit
+	 *  3) NumberRevisions: numero di revisioni in cui è stato modificata la classe (nella release)
+	 *  4) NumberBugFixes: numero di commit di tipo FixBug che hanno toccato la classe (nella release)
+	 *  5) LocAdded: numero di righe di codice aggiunte nel commit
+	 *  6) MaxLocAdded: massimo numero di LocAdded tra tutte le revisioni che hanno toccato la classe (nella release)
+	 *  7) AvgLocAdded: media tra tutti i LocAdded delle revisioni che hanno toccato la classe (nella release)
+	 *  8) Age: differenza in settimane tra la data di creazione della classe e la data della release corrente
+	 *  9) ChgSetSize: numero di file committed insieme alla classe
+	 *  10) MaxChgSetSize: numero massimo file committed insieme alla classe
+	 *  11) AvgChgSetSize: numero medio file committed insieme alla classe
+	 *  12) NAuth: numero di autori che hanno toccato la classe (nella release)
+	 *  13) Churn: differenza tra LocAdded e LocDeleted
+	 *  14) MaxChurn: massimo tra tutti i churn delle revisioni (nella release)
+	 *  15) AvgChurn: media tra tutti i churn delle revisioni (nella release)
+	 */
+	private MetricStore store;
+	private int index;
 	
 
+	/*
+	 * Metriche non associate ad una release, con uno store di una sola classe
+	 */
 	public Metrics() {
-		// Empty Constructor
+		this(new MetricStore(1), 0);
+	}
+	
+	public Metrics(MetricStore store, int index) {
+		this.store = store;
+		this.index = index;
 	}
 	
 
@@ -48,22 +56,32 @@ public class Metrics {
 	 */
 	public void calculateSize(ObjectId objectId, ObjectReader reader)
 			throws LargeObjectException,IOException {
-		byte[] data = reader.open(objectId).getBytes();
-		String content = new String(data, StandardCharsets.UTF_8);
-
-		int calcSize = 0;
-		Scanner scanner = new Scanner(content);
-
-		while (scanner.hasNextLine()) {
-			String line = scanner.nextLine();
-			line = line.replaceAll("\\s+", "");
-			if (!(line.startsWith("/") || line.startsWith("*") || line.startsWith("//") || line.startsWith("*/")
-					|| line.equalsIgnoreCase(""))) {
-				calcSize = calcSize + 1;
-			}
+		this.setSize(countSize(objectId, reader));
+	}
+	
+	
+	/**
+	 * Calcola la size di una classe passando per la cache condivisa, se presente
+	 */
+	public void calculateSize(ObjectId objectId, ObjectReader reader, SizeCache cache)
+			throws LargeObjectException,IOException {
+		if (cache == null) {
+			calculateSize(objectId, reader);
+		}
+		else {
+			this.setSize(cache.getSize(objectId, reader));
+		}
+	}
+	
+	
+	/**
+	 * Conta le linee di codice del blob, escludendo Commenti e linee vuote. Il blob viene letto
+	 * in streaming, quindi funziona anche per oggetti che non entrano in un array di byte
+	 */
+	public static int countSize(AnyObjectId objectId, ObjectReader reader) throws IOException {
+		try (InputStream in = reader.open(objectId).openStream()) {
+			return SlocCounter.count(in);
 		}
-		scanner.close();
-		this.setSize(calcSize);
 	}
 	
 	
@@ -77,8 +95,16 @@ public class Metrics {
 			linesDeleted += edit.getEndA() - edit.getBeginA();
 			linesAdded += edit.getEndB() - edit.getBeginB();
 		}
-		this.locTouched += (linesAdded + linesDeleted);
-		this.locAdded += linesAdded;
+		calculateLocTouched(linesAdded, linesDeleted);
+	}
+	
+	
+	/**
+	 * Calcola le linee di codice modificate di una classe in un commit, date le linee aggiunte e rimosse
+	 */
+	public void calculateLocTouched(int linesAdded, int linesDeleted) {
+		add(MetricStore.LOC_TOUCHED, linesAdded + linesDeleted);
+		add(MetricStore.LOC_ADDED, linesAdded);
 		calculateChurn(linesAdded, linesDeleted);
 		calculateMaxLocAdded(linesAdded);
 		calculateAVGLocAdded(linesAdded);
@@ -91,8 +117,8 @@ public class Metrics {
 	 */
 	public void calculateAVGLocAdded(int linesAdded) {
 		if (linesAdded!=0) {
-			counterLocAdded++;
-			avgLocAdded = locAdded/counterLocAdded;
+			add(MetricStore.COUNTER_LOC_ADDED, 1);
+			set(MetricStore.AVG_LOC_ADDED, getLocAdded()/get(MetricStore.COUNTER_LOC_ADDED));
 		}
 	}
 
@@ -101,9 +127,9 @@ public class Metrics {
 	 * Calcola il churn come (linesAdded-linesDeleted) tu tutte le versioni.
 	 */
 	private void calculateChurn(int linesAdded, int linesDeleted) {
-		this.churn += linesAdded - linesDeleted;
-		this.counterChurn ++;
-		calculateMaxChurn(this.churn);
+		add(MetricStore.CHURN, linesAdded - linesDeleted);
+		add(MetricStore.COUNTER_CHURN, 1);
+		calculateMaxChurn(getChurn());
 		calculateAVGChurn();
 	}
 
@@ -112,8 +138,8 @@ public class Metrics {
 	 * Calcola la metrica Max_Churn
 	 */
 	private void calculateMaxChurn(int churn) {
-		if (churn > this.maxChurn) {
-			this.maxChurn = churn;
+		if (churn > getMaxChurn()) {
+			set(MetricStore.MAX_CHURN, churn);
 		}
 	}
 	
@@ -122,7 +148,7 @@ public class Metrics {
 	 * Calcola la metrica AVGChurn
 	 */
 	private void calculateAVGChurn() {
-		this.avgChurn = this.churn/counterChurn;
+		set(MetricStore.AVG_CHURN, getChurn()/get(MetricStore.COUNTER_CHURN));
 	}
 	
 
@@ -130,8 +156,8 @@ public class Metrics {
 	 * Calcola la metrica MaxLocADDED
 	 */
 	private void calculateMaxLocAdded(int locAdded) {
-		if (locAdded > this.maxLocAdded) {
-			this.maxLocAdded = locAdded;
+		if (locAdded > getMaxLocAdded()) {
+			set(MetricStore.MAX_LOC_ADDED, locAdded);
 		}
 	}
 	
@@ -140,7 +166,7 @@ public class Metrics {
 	 * Incrementa di 1 il numero di BugFixed in cui è coinvolto
 	 */
 	public void increaseNumberBugFixed() {
-		this.numberBugFixes ++;
+		add(MetricStore.NUMBER_BUG_FIXES, 1);
 	}
 	
 	
@@ -148,7 +174,7 @@ public class Metrics {
 	 * Incrementa di 1 il numero di NumberRevisions in cui è coinvolto
 	 */
 	public void increaseNumberRevisions() {
-		this.numberRevisions ++;
+		add(MetricStore.NUMBER_REVISIONS, 1);
 	}
 	
 	
@@ -156,8 +182,8 @@ public class Metrics {
 	 * Incrementa il numero di file insieme ai quali è stata committata la classe
 	 */
 	public void increaseChgSetSize(int chg) {
-		this.counterChgSet++;
-		this.chgSetSize += chg;
+		add(MetricStore.COUNTER_CHG_SET, 1);
+		add(MetricStore.CHG_SET_SIZE, chg);
 		calculateMaxChgSetSize(chg);
 		calculateAVGChgSetSize();
 	}
@@ -167,8 +193,8 @@ public class Metrics {
 	 * Calcola il numero massimo di ChgSet
 	 */
 	public void calculateMaxChgSetSize(int chg) {
-		if (chg > maxChgSetSize) {
-			this.maxChgSetSize = chg;
+		if (chg > getMaxChgSetSize()) {
+			set(MetricStore.MAX_CHG_SET_SIZE, chg);
 		}
 	}
 	
@@ -177,25 +203,82 @@ public class Metrics {
 	 * Calcola il numero medio di ChgSet
 	 */
 	public void calculateAVGChgSetSize() {
-		this.avgChgSetSize = this.chgSetSize/counterChgSet;
+		set(MetricStore.AVG_CHG_SET_SIZE, getChgSetSize()/get(MetricStore.COUNTER_CHG_SET));
 	}
 	
 	/*
 	 * Calcola il numero di autori che hanno interaggito su una classe C (nella release)
 	 */
 	public void calculateNAuth(String authorName) {
-		if (!listOfAuthors.contains(authorName)) {
-			nAuth++;
-			listOfAuthors.add(authorName);
+		calculateNAuth(StringDictionary.AUTHORS.getId(authorName));
+	}
+	
+	public void calculateNAuth(int authorId) {
+		if (store.addAuthor(index, authorId)) {
+			add(MetricStore.N_AUTH, 1);
+		}
+	}
+	
+	/*
+	 * Scrive le metriche calcolate dai commit, compresi i contatori intermedi (vedi git.MiningCheckpoint).
+	 * Size, Age e NumberBugFixes non vengono salvate perché ricalcolate ad ogni run. Gli autori vengono
+	 * salvati per nome, dato che gli id dello StringDictionary cambiano ad ogni run
+	 */
+	public void write(DataOutput out) throws IOException {
+		for (int c = 0; c < MetricStore.COLUMNS; c++) {
+			out.writeInt(c == MetricStore.NUMBER_BUG_FIXES ? 0 : get(c));
+		}
+		int[] authors = store.getAuthors(index);
+		out.writeInt(authors.length);
+		for (int author : authors) {
+			out.writeUTF(StringDictionary.AUTHORS.get(author));
 		}
 	}
 	
+	
+	/*
+	 * Legge le metriche scritte con write()
+	 */
+	public static Metrics read(DataInput in) throws IOException {
+		Metrics m = new Metrics();
+		for (int c = 0; c < MetricStore.COLUMNS; c++) {
+			m.set(c, in.readInt());
+		}
+		int authors = in.readInt();
+		for (int i = 0; i < authors; i++) {
+			m.store.addAuthor(m.index, StringDictionary.AUTHORS.getId(in.readUTF()));
+		}
+		return m;
+	}
+	
+	
+	/*
+	 * Copia nella classe le metriche calcolate dai commit, lasciando invariate Size ed Age
+	 */
+	public void copyCommitMetrics(Metrics from) {
+		store.copy(from.store, from.index, index, false);
+	}
+	
+	
+	private int get(int column) {
+		return store.get(index, column);
+	}
+	
+	private void set(int column, int value) {
+		store.set(index, column, value);
+	}
+	
+	private void add(int column, int value) {
+		store.set(index, column, store.get(index, column) + value);
+	}
+	
+	
 	/*
 	 * [DEBUG] Stampa i dati sulle metriche
 	 */
 	public void print() {
-		Logger.getLogger(Metrics.class.getName()).info(String.format("Size: %d%nLocTouched: %d%nMaxLocAdded: %d%nChurn: %d%nMaxChurn: %d", size, locTouched,
-				maxLocAdded, churn, maxChurn));
+		Logger.getLogger(Metrics.class.getName()).info(String.format("Size: %d%nLocTouched: %d%nMaxLocAdded: %d%nChurn: %d%nMaxChurn: %d", getSize(), getLocTouched(),
+				getMaxLocAdded(), getChurn(), getMaxChurn()));
 	}
 	
 	
@@ -205,103 +288,111 @@ public class Metrics {
 	 */
 
 	public double getAvgLocAdded() {
-		return this.avgLocAdded;
+		return get(MetricStore.AVG_LOC_ADDED);
 	}
 
 	public int getLocAdded() {
-		return this.locAdded;
+		return get(MetricStore.LOC_ADDED);
 	}
 	
 	public int getChurn() {
-		return this.churn;
+		return get(MetricStore.CHURN);
 	}
 	
 	public int getMaxChurn() {
-		return this.maxChurn;
+		return get(MetricStore.MAX_CHURN);
 	}
 	
 	public int getMaxLocAdded() {
-		return this.maxLocAdded;
+		return get(MetricStore.MAX_LOC_ADDED);
 	}
 	
 	public int getChgSetSize() {
-		return chgSetSize;
+		return get(MetricStore.CHG_SET_SIZE);
 	}
 	
 	public void setChgSetSize(int chgSetSize) {
-		this.chgSetSize = chgSetSize;
+		set(MetricStore.CHG_SET_SIZE, chgSetSize);
 	}
 
 	public int getNumberBugFixes() {
-		return numberBugFixes;
+		return get(MetricStore.NUMBER_BUG_FIXES);
 	}
 
 	public void setNumberBugFixes(int numberBugFixes) {
-		this.numberBugFixes = numberBugFixes;
+		set(MetricStore.NUMBER_BUG_FIXES, numberBugFixes);
 	}
 
 	public int getNumberRevisions() {
-		return numberRevisions;
+		return get(MetricStore.NUMBER_REVISIONS);
 	}
 
 	public void setNumberRevisions(int numberRevisions) {
-		this.numberRevisions = numberRevisions;
+		set(MetricStore.NUMBER_REVISIONS, numberRevisions);
 	}
 
 	public int getAvgChurn() {
-		return avgChurn;
+		return get(MetricStore.AVG_CHURN);
 	}
 
 	public void setAvgChurn(int avgChurn) {
-		this.avgChurn = avgChurn;
+		set(MetricStore.AVG_CHURN, avgChurn);
 	}
 
 	public int getMaxChgSetSize() {
-		return maxChgSetSize;
+		return get(MetricStore.MAX_CHG_SET_SIZE);
 	}
 
 	public void setMaxChgSetSize(int maxChgSetSize) {
-		this.maxChgSetSize = maxChgSetSize;
+		set(MetricStore.MAX_CHG_SET_SIZE, maxChgSetSize);
 	}
 
 	public int getAvgChgSetSize() {
-		return avgChgSetSize;
+		return get(MetricStore.AVG_CHG_SET_SIZE);
 	}
 
 	public void setAvgChgSetSize(int avgChgSetSize) {
-		this.avgChgSetSize = avgChgSetSize;
+		set(MetricStore.AVG_CHG_SET_SIZE, avgChgSetSize);
 	}
 	
 	public void setAge(int age) {
-		this.age = age;
+		store.setAge(index, age);
 	}
 	
 	public int getAge() {
-		return this.age;
+		return store.getAge(index);
 	}
 	
 	public void setLocTouched(int locTouched) {
-		this.locTouched = locTouched;
+		set(MetricStore.LOC_TOUCHED, locTouched);
 	}
 	
 	public int getLocTouched() {
-		return this.locTouched;
+		return get(MetricStore.LOC_TOUCHED);
 	}
 	
 	public int getSize() {
-		return size;
+		return store.getSize(index);
 	}
 	
 	public void setSize(int size) {
-		this.size = size;
+		store.setSize(index, size);
 	}
 
 	public int getnAuth() {
-		return nAuth;
+		return get(MetricStore.N_AUTH);
 	}
 
 	public void setnAuth(int nAuth) {
-		this.nAuth = nAuth;
+		set(MetricStore.N_AUTH, nAuth);
+	}
+	
+	public MetricStore getStore() {
+		return store;
+	}
+	
+	public int getIndex() {
+		return index;
 	}
 	
 }
@@ -7,22 +7,49 @@ import java.util.logging.Logger;
 import git.GitRelease;
 import tools.PathHandler;
 
+/*
+ * Classe Java in una release. Il path è salvato come id dello StringDictionary.PATHS, condiviso con le
+ * stesse classi delle altre release; il nome viene ricavato dal path
+ */
 public class ProjectClass {
 	
-	Logger logger = Logger.getLogger(ProjectClass.class.getName());
+	private static Logger logger = Logger.getLogger(ProjectClass.class.getName());
 	
-	private String path;
-	private String name;
+	private int pathId;
 	private GitRelease release;
 	private Date dateAdded;
-	private Metrics metrics;
+	private MetricStore metricStore;	// Store delle metriche della release (vedi GitRelease.setClassList())
+	private int metricIndex;
 	
+	/*
+	 * Ritorna la vista sulle metriche della classe. Una classe non ancora associata ad uno store
+	 * riceve uno store con una sola classe
+	 */
 	public Metrics getMetrics() {
-		return metrics;
+		if (metricStore == null) {
+			metricStore = new MetricStore(1);
+			metricIndex = 0;
+		}
+		return new Metrics(metricStore, metricIndex);
 	}
 
+	/*
+	 * Associa la classe alla riga dello store della vista in input (senza copiare le metriche)
+	 */
 	public void setMetrics(Metrics metrics) {
-		this.metrics = metrics;
+		this.metricStore = metrics.getStore();
+		this.metricIndex = metrics.getIndex();
+	}
+	
+	/*
+	 * Sposta le metriche della classe nella riga index dello store in input
+	 */
+	public void moveMetrics(MetricStore store, int index) {
+		if (this.metricStore != null) {
+			store.copy(this.metricStore, this.metricIndex, index, true);
+		}
+		this.metricStore = store;
+		this.metricIndex = index;
 	}
 	
 	public Date getDateAdded() {
@@ -36,26 +63,29 @@ public class ProjectClass {
 	// Attributi della classe
 	private boolean buggyness;
 	
-	public ProjectClass (String path, String name, GitRelease release){
-		this.path = path;
-		this.name = name;
+	public ProjectClass (String path, GitRelease release){
+		this(StringDictionary.PATHS.getId(path), release);
+	}
+
+	public ProjectClass (int pathId, GitRelease release){
+		this.pathId = pathId;
 		this.release = release;
 	}
 
 	public String getPath() {
-		return path;
+		return StringDictionary.PATHS.get(pathId);
 	}
 
 	public void setPath(String path) {
-		this.path = path;
+		this.pathId = StringDictionary.PATHS.getId(path);
 	}
 
-	public String getName() {
-		return name;
+	public int getPathId() {
+		return pathId;
 	}
 
-	public void setName(String name) {
-		this.name = name;
+	public String getName() {
+		return PathHandler.getNameFromPath(getPath());
 	}
 
 	public GitRelease getRelease() {
@@ -76,11 +106,10 @@ public class ProjectClass {
 	
 	public void rename(String newPath) {
 		this.setPath(newPath);
-		this.setName(PathHandler.getNameFromPath(newPath));
 	}
 	
 	public void print() {
-		String str = String.format("Class Name: %s%nnClass Release: %s", this.path, this.release.getName());
+		String str = String.format("Class Name: %s%nnClass Release: %s", getPath(), this.release.getName());
 		logger.log(Level.INFO, str);
 		if (dateAdded!=null) {
 			String log = String.format("Class Date: %s%nRelease Date: %s", this.getDateAdded(), this.release.getDate());
@@ -0,0 +1,159 @@
+package data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+
+/*
+ * Cache della size (SLOC) delle classi indicizzata per ObjectId del blob. Un file non modificato tra
+ * due release ha lo stesso blob, quindi la size viene calcolata una sola volta per tutto il run.
+ * La cache è limitata a maxEntries elementi con politica LRU ed è thread-safe, così da poter
+ * essere condivisa dai thread di SnapshotBuilder. Può essere salvata su disco e ricaricata nei run successivi.
+ */
+public class SizeCache {
+	
+	private static final int MAGIC = 0x534c4f43;	// "SLOC"
+	private static final int VERSION = 2;			// Da incrementare se cambia il calcolo della size
+	
+	private final int maxEntries;
+	private final Map<ObjectId, Integer> sizes;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	
+	public SizeCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+		this.sizes = new LinkedHashMap<ObjectId, Integer>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ObjectId, Integer> eldest) {
+				return size() > SizeCache.this.maxEntries;
+			}
+		};
+	}
+	
+	
+	/*
+	 * Ritorna la size del blob, calcolandola soltanto se non è già presente in cache
+	 */
+	public int getSize(AnyObjectId blobId, ObjectReader reader) throws IOException {
+		Integer size;
+		synchronized (sizes) {
+			size = sizes.get(blobId);
+		}
+		if (size != null) {
+			hits.incrementAndGet();
+			return size;
+		}
+		misses.incrementAndGet();
+		int calcSize = Metrics.countSize(blobId, reader);
+		synchronized (sizes) {
+			sizes.put(blobId.copy(), calcSize);
+		}
+		return calcSize;
+	}
+	
+	
+	/*
+	 * Carica la cache da file. Se il file non esiste o ha un formato diverso la cache resta vuota
+	 */
+	public void load(String fileName) {
+		File file = new File(fileName);
+		if (!file.exists()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return;
+			}
+			int count = in.readInt();
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			synchronized (sizes) {
+				for (int i = 0; i < count; i++) {
+					in.readFully(raw);
+					sizes.put(ObjectId.fromRaw(raw), in.readInt());
+				}
+			}
+		} catch (IOException e) {
+			Logger.getLogger(SizeCache.class.getName()).log(Level.WARNING, "Size cache not loaded", e);
+		}
+	}
+	
+	
+	/*
+	 * Salva su file il contenuto della cache (dal meno al più recentemente usato)
+	 */
+	public void save(String fileName) {
+		List<Map.Entry<ObjectId, Integer>> entries;
+		synchronized (sizes) {
+			entries = new ArrayList<>(sizes.entrySet());
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(entries.size());
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			for (Map.Entry<ObjectId, Integer> e : entries) {
+				e.getKey().copyRawTo(raw, 0);
+				out.write(raw);
+				out.writeInt(e.getValue());
+			}
+		} catch (IOException e) {
+			Logger.getLogger(SizeCache.class.getName()).log(Level.WARNING, "Size cache not saved", e);
+		}
+	}
+	
+	
+	/*
+	 * [DEBUG] Stampa hit, miss e numero di elementi della cache
+	 */
+	public void print() {
+		String output = String.format("Size cache: %d hits, %d misses (%.1f%% hit ratio), %d entries",
+				getHits(), getMisses(), getHitRatio() * 100, getEntries());
+		Logger.getLogger(SizeCache.class.getName()).log(Level.INFO, output);
+	}
+	
+	
+	/*===============================================================================================
+	 * Getters & Setters
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+	
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	public double getHitRatio() {
+		long total = getHits() + getMisses();
+		return total == 0 ? 0 : (double) getHits() / total;
+	}
+	
+	public int getEntries() {
+		synchronized (sizes) {
+			return sizes.size();
+		}
+	}
+	
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+}
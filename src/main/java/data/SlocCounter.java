@@ -0,0 +1,125 @@
+package data;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+ * Contatore delle linee di codice (SLOC) che lavora direttamente sui byte del sorgente Java, letto
+ * in streaming. Una linea viene contata se contiene almeno un carattere non bianco fuori dai commenti.
+ * Lo stato dei commenti a blocco, delle stringhe e dei caratteri viene mantenuto tra una linea e l'altra,
+ * in un solo passaggio e senza allocazioni per linea.
+ */
+public class SlocCounter {
+	
+	private static final int BUFFER_SIZE = 8192;
+	
+	// Stati dell'automa
+	private static final int CODE = 0;
+	private static final int LINE_COMMENT = 1;
+	private static final int BLOCK_COMMENT = 2;
+	private static final int STRING = 3;
+	private static final int CHAR = 4;
+	
+	private SlocCounter() {}
+	
+	
+	/*
+	 * Conta le linee di codice dello stream in input. Lo stream non viene chiuso
+	 */
+	public static int count(InputStream in) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int state = CODE;
+		boolean lineHasCode = false;
+		boolean pendingSlash = false;	// '/' letto in CODE, in attesa del carattere successivo
+		boolean pendingStar = false;	// '*' letto in BLOCK_COMMENT, in attesa di '/'
+		boolean escape = false;			// '\' letto in STRING o CHAR
+		int lines = 0;
+		int n;
+		
+		while ((n = in.read(buffer)) != -1) {
+			for (int i = 0; i < n; i++) {
+				int b = buffer[i];
+				
+				if (b == '\n' || b == '\r') {
+					if (pendingSlash || lineHasCode) {
+						lines++;
+					}
+					lineHasCode = false;
+					pendingSlash = false;
+					pendingStar = false;
+					escape = false;
+					if (state != BLOCK_COMMENT) {
+						state = CODE;
+					}
+					continue;
+				}
+				
+				switch (state) {
+				case CODE:
+					if (pendingSlash) {
+						pendingSlash = false;
+						if (b == '/') {
+							state = LINE_COMMENT;
+							break;
+						}
+						if (b == '*') {
+							state = BLOCK_COMMENT;
+							break;
+						}
+						lineHasCode = true;
+					}
+					if (b == '/') {
+						pendingSlash = true;
+					}
+					else if (!isWhitespace(b)) {
+						lineHasCode = true;
+						if (b == '"') {
+							state = STRING;
+						}
+						else if (b == '\'') {
+							state = CHAR;
+						}
+					}
+					break;
+				case BLOCK_COMMENT:
+					if (pendingStar && b == '/') {
+						state = CODE;
+						pendingStar = false;
+					}
+					else {
+						pendingStar = (b == '*');
+					}
+					break;
+				case STRING:
+				case CHAR:
+					if (escape) {
+						escape = false;
+					}
+					else if (b == '\\') {
+						escape = true;
+					}
+					else if (b == (state == STRING ? '"' : '\'')) {
+						state = CODE;
+					}
+					break;
+				default:	// LINE_COMMENT: si ignora tutto fino a fine linea
+					break;
+				}
+			}
+		}
+		
+		// Ultima linea senza terminatore
+		if (pendingSlash || lineHasCode) {
+			lines++;
+		}
+		return lines;
+	}
+	
+	
+	/*
+	 * Caratteri considerati bianchi, gli stessi della classe \s delle regex Java
+	 */
+	private static boolean isWhitespace(int b) {
+		return b == ' ' || b == '\t' || b == 0x0B || b == '\f';
+	}
+}
@@ -0,0 +1,75 @@
+package data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Dizionario di stringhe condiviso dal run di un progetto (va svuotato con clear() prima del progetto
+ * successivo): ad ogni stringa viene assegnato un id intero denso (0, 1, 2, ...), così che path ed autori
+ * vengano salvati una sola volta e gli indici possano usare gli id come chiave.
+ * Gli id non sono stabili tra run diversi: su disco vanno salvate le stringhe.
+ * L'inserimento è sincronizzato, la lettura di un id già assegnato non richiede lock.
+ */
+public class StringDictionary {
+
+	public static final StringDictionary PATHS = new StringDictionary();
+	public static final StringDictionary AUTHORS = new StringDictionary();
+
+	public static final int NOT_FOUND = -1;
+
+	private final Map<String, Integer> ids = new HashMap<>();
+	private volatile String[] values = new String[64];
+	private int size;
+
+
+	/*
+	 * Ritorna l'id della stringa, assegnandone uno nuovo se non è presente
+	 */
+	public synchronized int getId(String value) {
+		Integer id = ids.get(value);
+		if (id != null) {
+			return id;
+		}
+		String[] current = values;
+		if (size == current.length) {
+			current = Arrays.copyOf(current, size * 2);
+		}
+		current[size] = value;
+		values = current;
+		ids.put(value, size);
+		return size++;
+	}
+
+
+	/*
+	 * Ritorna l'id della stringa senza inserirla, NOT_FOUND se non è presente
+	 */
+	public synchronized int lookup(String value) {
+		Integer id = ids.get(value);
+		return id == null ? NOT_FOUND : id;
+	}
+
+
+	/*
+	 * Ritorna la stringa con l'id in input
+	 */
+	public String get(int id) {
+		return values[id];
+	}
+
+
+	/*
+	 * Svuota il dizionario: gli id assegnati finora non sono più validi
+	 */
+	public synchronized void clear() {
+		ids.clear();
+		values = new String[64];
+		size = 0;
+	}
+
+
+	public synchronized int size() {
+		return size;
+	}
+}
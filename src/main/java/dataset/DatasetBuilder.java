@@ -7,14 +7,15 @@ import java.util.logging.Logger;
 
 import org.eclipse.jgit.api.errors.GitAPIException;
 
-import data.ProjectClass;
 import data.Proportion;
+import data.StringDictionary;
 import git.GitCommit;
 import git.GitRelease;
 import git.GitRepo;
 import jira.JiraProject;
 import jira.JiraTicket;
-import tools.CSVWriter;
+import tools.CSVStreamWriter;
+import tools.DebugTools;
 import tools.Parameters;
 import tools.PathHandler;
 
@@ -22,6 +23,11 @@ public class DatasetBuilder {
 
 	public void create(String projName) throws GitAPIException, IOException{
 		Logger logger = Logger.getLogger(DatasetBuilder.class.getName());
+		
+		// Path e autori del progetto precedente non servono più (e dimensionerebbero le MetricWindows)
+		StringDictionary.PATHS.clear();
+		StringDictionary.AUTHORS.clear();
+		
 		String repoURL = String.format("https://github.com/%s/%s", Parameters.GIT_PROJ_ORG, Parameters.getGitProjectName());
 		String gitFolderPath = PathHandler.getGitPath() + Parameters.getGitProjectName();
 		GitRepo repository = new GitRepo(repoURL, gitFolderPath);
@@ -30,6 +36,7 @@ public class DatasetBuilder {
 		// Mantengo soltanto le GitRelease che hanno una corrispettiva release su Jira
 		List<GitRelease> commonReleases = repository.filterReleases(jiraClient.getReleaseList(), repository.getReleaseList());	
 		repository.setReleaseList(commonReleases);	// Imposto come lista delle release solo quelle presenti anche su Jira
+		repository.fetchClassLists();				// Calcolo le classi (e la size) soltanto delle release comuni
 		repository.fetchCommits();					// Chiamato dopo aver impostato le release comuni in GitRepo così da prendere solo i commit delle release Jira
 		repository.bindRevisionsToReleases();		// Associa ad ogni commit/revisione la relativa release
 		
@@ -43,17 +50,16 @@ public class DatasetBuilder {
 		List<GitCommit> fixBugCommits = repository.filterCommits(ticketList);
 		repository.setFixCommitList(fixBugCommits);
 		
-		// Imposto tutte le metriche delle classi
-		repository.setMetrics();																	
-
-		// Ottengo tutta la lista delle classi e calcolo per ognuna anche l'Age
-		List<ProjectClass> projectClassList = repository.getClasses();
-		
-		// Genero il dataset
+		// Imposto tutte le metriche delle classi e scrivo il dataset (anche nelle varianti cumulativa e su
+		// finestra mobile) una release alla volta, appena le righe della release sono definitive
 		logger.log(Level.INFO,"Writing CSV...");
-		CSVWriter.writeClassOnCSV(projectClassList, projName, Parameters.DATASET_CSV);
-		CSVWriter.writeCSVForWeka(projectClassList, projName, Parameters.WEKA_CSV);
+		try (CSVStreamWriter writer = new CSVStreamWriter(repository, projName)) {
+			repository.setMetrics(writer);
+		}
+		
+		repository.closeSpill();
 		
+		logger.log(Level.INFO, String.format("Peak RSS: %d MB", DebugTools.getPeakMemoryMB()));
 		logger.log(Level.INFO,"CSV written successfully.\nEnd of the program.");
 	}
 	
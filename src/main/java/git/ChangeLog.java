@@ -0,0 +1,257 @@
+package git;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import data.StringDictionary;
+import tools.Parameters;
+
+/*
+ * Log binario delle modifiche ai file Java di ogni commit (vedi CommitChanges), salvato su disco e letto
+ * tramite memory mapping. I commit sono indicizzati per ordinale, nell'ordine della commitList del run che
+ * ha scritto il file. Ogni scrittura crea una nuova generazione del file (vedi FileGenerations), così che
+ * il log aperto dal MetricsEngine non debba essere sostituito mentre è ancora mappato. Formato (big endian):
+ *   header:  MAGIC, VERSION, hash delle impostazioni, numero di commit, numero di record, numero di stringhe
+ *   commit:  20 byte di ObjectId, ChgSetSize, stringa dell'autore, primo record, numero di record
+ *   record:  stringa del path, ChangeType, linee aggiunte, linee rimosse
+ *   stringhe: lunghezza e byte UTF-8 di path ed autori, indicizzati dai commit e dai record
+ */
+public class ChangeLog {
+
+	private static final int MAGIC = 0x434c4f47;	// "CLOG"
+	private static final int VERSION = 1;			// Da incrementare se cambia il formato o il calcolo dei record
+	private static final int HEADER_SIZE = 24;
+	private static final int COMMIT_SIZE = Constants.OBJECT_ID_LENGTH + 16;
+	private static final int RECORD_SIZE = 16;
+	private static final ChangeType[] CHANGE_TYPES = ChangeType.values();
+
+	private ByteBuffer buffer;
+	private int commitCount;
+	private int recordsOffset;
+	private String[] strings;
+	private int[] pathIds;			// Id nello StringDictionary di ogni stringa, assegnati alla prima lettura
+	private int[] authorIds;
+	private Map<ObjectId, Integer> ordinals;
+
+	private ChangeLog() {
+		this.commitCount = 0;
+		this.strings = new String[0];
+		this.pathIds = new int[0];
+		this.authorIds = new int[0];
+		this.ordinals = new HashMap<>();
+	}
+
+
+	/*
+	 * Apre in memory mapping la generazione più recente del log. Se il file non esiste, ha un formato diverso
+	 * o è stato scritto con impostazioni diverse, ritorna un log vuoto
+	 */
+	public static ChangeLog open(String fileName) {
+		ChangeLog log = new ChangeLog();
+		FileGenerations.deleteOld(fileName);
+		File file = FileGenerations.current(fileName);
+		if (file == null) {
+			return log;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != getSettingsHash()) {
+				return log;
+			}
+			int commits = buffer.getInt(12);
+			int records = buffer.getInt(16);
+			int stringCount = buffer.getInt(20);
+
+			// Le stringhe vengono decodificate una sola volta, i record restano sul file
+			String[] strings = new String[stringCount];
+			int offset = HEADER_SIZE + commits * COMMIT_SIZE + records * RECORD_SIZE;
+			for (int i = 0; i < stringCount; i++) {
+				byte[] raw = new byte[buffer.getInt(offset)];
+				ByteBuffer view = buffer.duplicate();
+				((Buffer) view).position(offset + 4);	// Cast a Buffer: su Java 8 non esiste ByteBuffer.position(int)
+				view.get(raw);
+				strings[i] = new String(raw, StandardCharsets.UTF_8);
+				offset += 4 + raw.length;
+			}
+
+			Map<ObjectId, Integer> ordinals = new HashMap<>();
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			for (int i = 0; i < commits; i++) {
+				ByteBuffer view = buffer.duplicate();
+				((Buffer) view).position(HEADER_SIZE + i * COMMIT_SIZE);
+				view.get(raw);
+				ordinals.put(ObjectId.fromRaw(raw), i);
+			}
+
+			log.buffer = buffer;
+			log.commitCount = commits;
+			log.recordsOffset = HEADER_SIZE + commits * COMMIT_SIZE;
+			log.strings = strings;
+			log.pathIds = newIdTable(stringCount);
+			log.authorIds = newIdTable(stringCount);
+			log.ordinals = ordinals;
+		} catch (IOException | RuntimeException e) {
+			Logger.getLogger(ChangeLog.class.getName()).log(Level.WARNING, "Change log not loaded", e);
+			return new ChangeLog();
+		}
+		return log;
+	}
+
+
+	/*
+	 * Ritorna l'ordinale del commit nel log, -1 se il commit non è presente
+	 */
+	public int getOrdinal(AnyObjectId commitId) {
+		Integer ordinal = ordinals.get(commitId);
+		return ordinal == null ? -1 : ordinal;
+	}
+
+
+	/*
+	 * Legge le modifiche del commit in posizione ordinal. Usa soltanto letture assolute sul buffer,
+	 * quindi può essere chiamato da più thread
+	 */
+	public CommitChanges read(int ordinal) {
+		int commitOffset = HEADER_SIZE + ordinal * COMMIT_SIZE + Constants.OBJECT_ID_LENGTH;
+		CommitChanges changes = new CommitChanges(buffer.getInt(commitOffset),
+				getId(StringDictionary.AUTHORS, authorIds, buffer.getInt(commitOffset + 4)));
+		int first = buffer.getInt(commitOffset + 8);
+		int count = buffer.getInt(commitOffset + 12);
+		for (int i = first; i < first + count; i++) {
+			int offset = recordsOffset + i * RECORD_SIZE;
+			changes.addFile(CHANGE_TYPES[buffer.getInt(offset + 4)], getId(StringDictionary.PATHS, pathIds, buffer.getInt(offset)),
+					buffer.getInt(offset + 8), buffer.getInt(offset + 12));
+		}
+		return changes;
+	}
+
+
+	/*
+	 * Ritorna l'id nel dizionario della stringa in posizione index. Thread diversi possono calcolare lo
+	 * stesso id contemporaneamente, ma scrivono sempre lo stesso valore
+	 */
+	private int getId(StringDictionary dictionary, int[] ids, int index) {
+		int id = ids[index];
+		if (id == StringDictionary.NOT_FOUND) {
+			id = dictionary.getId(strings[index]);
+			ids[index] = id;
+		}
+		return id;
+	}
+
+
+	private static int[] newIdTable(int size) {
+		int[] ids = new int[size];
+		Arrays.fill(ids, StringDictionary.NOT_FOUND);
+		return ids;
+	}
+
+
+	/*
+	 * Scrive il log con i commit nell'ordine in input, come nuova generazione del file. Il file viene scritto
+	 * in un file temporaneo e poi rinominato, così che una generazione incompleta non venga mai aperta
+	 */
+	public static void write(String fileName, List<ObjectId> commitIds, List<CommitChanges> changes) {
+		Map<String, Integer> stringIndex = new LinkedHashMap<>();
+		int records = 0;
+		for (CommitChanges c : changes) {
+			stringIndex.putIfAbsent(c.getAuthor(), stringIndex.size());
+			for (CommitChanges.FileChange f : c.getFiles()) {
+				stringIndex.putIfAbsent(f.getPath(), stringIndex.size());
+			}
+			records += c.getFiles().size();
+		}
+
+		File file = FileGenerations.next(fileName);
+		File tmp = new File(fileName + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(getSettingsHash());
+			out.writeInt(commitIds.size());
+			out.writeInt(records);
+			out.writeInt(stringIndex.size());
+
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			int first = 0;
+			for (int i = 0; i < commitIds.size(); i++) {
+				CommitChanges c = changes.get(i);
+				commitIds.get(i).copyRawTo(raw, 0);
+				out.write(raw);
+				out.writeInt(c.getChgSetSize());
+				out.writeInt(stringIndex.get(c.getAuthor()));
+				out.writeInt(first);
+				out.writeInt(c.getFiles().size());
+				first += c.getFiles().size();
+			}
+			for (CommitChanges c : changes) {
+				for (CommitChanges.FileChange f : c.getFiles()) {
+					out.writeInt(stringIndex.get(f.getPath()));
+					out.writeInt(f.getChangeType().ordinal());
+					out.writeInt(f.getLinesAdded());
+					out.writeInt(f.getLinesDeleted());
+				}
+			}
+			for (String s : stringIndex.keySet()) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		} catch (IOException e) {
+			Logger.getLogger(ChangeLog.class.getName()).log(Level.WARNING, "Change log not saved", e);
+			return;
+		}
+
+		try {
+			Files.move(tmp.toPath(), file.toPath());
+		} catch (IOException e) {
+			Logger.getLogger(ChangeLog.class.getName()).log(Level.WARNING, "Change log not saved", e);
+		}
+	}
+
+
+	/*
+	 * Hash delle impostazioni che cambiano il contenuto dei record
+	 */
+	private static int getSettingsHash() {
+		return Parameters.getMiningSettings().hashCode();
+	}
+
+
+	/*===============================================================================================
+	 * Getters & Setters
+	 */
+	public int getCommitCount() {
+		return commitCount;
+	}
+
+	public ObjectId getCommitId(int ordinal) {
+		byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+		ByteBuffer view = buffer.duplicate();
+		((Buffer) view).position(HEADER_SIZE + ordinal * COMMIT_SIZE);
+		view.get(raw);
+		return ObjectId.fromRaw(raw);
+	}
+}
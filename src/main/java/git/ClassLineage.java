@@ -0,0 +1,143 @@
+package git;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import data.ProjectClass;
+import data.StringDictionary;
+
+/*
+ * Indice delle classi tra le release: per ogni path mantiene un array con la posizione della classe nella
+ * lista delle classi di ogni release (nella posizione della release). Non vengono mantenuti riferimenti
+ * alle ProjectClass, così che le liste delle classi possano essere scaricate su disco (vedi ReleaseSpill).
+ * I path sono indicizzati per id dello StringDictionary.PATHS.
+ * Le release devono essere ordinate per data, come dopo GitRepo.filterReleases().
+ */
+public class ClassLineage {
+
+	private List<GitRelease> releases;
+	private Map<GitRelease, Integer> positions;
+	private Map<String, Integer> namePositions;
+	private int[] firstAfter;					// Per ogni release, posizione della prima release con data successiva
+	private int[][] lineage;			// lineage[id del path][posizione della release] = indice della classe + 1, 0 se assente
+
+	public ClassLineage(List<GitRelease> releases) {
+		this.releases = new ArrayList<>(releases);
+		this.positions = new IdentityHashMap<>();
+		this.namePositions = new HashMap<>();
+		this.lineage = new int[StringDictionary.PATHS.size()][];
+		this.firstAfter = new int[releases.size()];
+
+		int n = releases.size();
+		for (int i = 0; i < n; i++) {
+			GitRelease r = releases.get(i);
+			positions.put(r, i);
+			namePositions.putIfAbsent(r.getName(), i);
+			List<ProjectClass> classList = r.getClassList();
+			for (int j = 0; j < classList.size(); j++) {
+				int id = classList.get(j).getPathId();
+				if (lineage[id] == null) {
+					lineage[id] = new int[n];
+				}
+				lineage[id][i] = j + 1;
+			}
+		}
+
+		// Release con la stessa data non sono considerate successive
+		int next = n;
+		for (int i = n - 1; i >= 0; i--) {
+			if (i + 1 < n && releases.get(i + 1).getDate().after(releases.get(i).getDate())) {
+				next = i + 1;
+			}
+			firstAfter[i] = next;
+		}
+	}
+
+
+	/*
+	 * Ritorna la classe con il path specificato nella release in input, null se non presente
+	 */
+	public ProjectClass getProjectClass(GitRelease release, String path) {
+		return getProjectClass(release, StringDictionary.PATHS.lookup(path));
+	}
+
+	public ProjectClass getProjectClass(GitRelease release, int pathId) {
+		return getProjectClass(getPosition(release), pathId);
+	}
+
+	public ProjectClass getProjectClass(int position, int pathId) {
+		int index = getClassIndex(position, pathId);
+		return index < 0 ? null : releases.get(position).getClassList().get(index);
+	}
+
+
+	/*
+	 * Ritorna true se la classe esiste nella release in posizione position, senza caricarne la lista delle classi
+	 */
+	public boolean contains(int position, int pathId) {
+		return getClassIndex(position, pathId) >= 0;
+	}
+
+	public boolean contains(GitRelease release, int pathId) {
+		return contains(getPosition(release), pathId);
+	}
+
+
+	/*
+	 * Ritorna l'indice della classe nella lista delle classi della release in posizione position, -1 se assente
+	 */
+	private int getClassIndex(int position, int pathId) {
+		// I path aggiunti al dizionario dopo la costruzione (ad esempio dai diff) non sono in nessuna release
+		if (position < 0 || pathId < 0 || pathId >= lineage.length || lineage[pathId] == null) {
+			return -1;
+		}
+		return lineage[pathId][position] - 1;
+	}
+
+
+	/*
+	 * Ritorna tutte le release con data successiva a quella in input
+	 */
+	public List<GitRelease> getReleasesFrom(GitRelease start) {
+		int position = getPosition(start);
+		if (position < 0) {
+			return new ArrayList<>();
+		}
+		return releases.subList(firstAfter[position], releases.size());
+	}
+
+
+	/*
+	 * Ritorna la posizione della prima release con data successiva a quella in input
+	 */
+	public int getFirstPositionAfter(GitRelease release) {
+		int position = getPosition(release);
+		return position < 0 ? releases.size() : firstAfter[position];
+	}
+
+
+	/*===============================================================================================
+	 * Getters & Setters
+	 */
+	public int getPosition(GitRelease release) {
+		Integer position = positions.get(release);
+		return position == null ? -1 : position;
+	}
+
+	public int getPosition(String releaseName) {
+		Integer position = namePositions.get(releaseName);
+		return position == null ? -1 : position;
+	}
+
+	public GitRelease getRelease(String releaseName) {
+		int position = getPosition(releaseName);
+		return position < 0 ? null : releases.get(position);
+	}
+
+	public int getReleaseCount() {
+		return releases.size();
+	}
+}
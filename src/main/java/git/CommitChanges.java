@@ -0,0 +1,97 @@
+package git;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+
+import data.StringDictionary;
+
+/*
+ * Modifiche di un commit ai file Java, calcolate dai diff oppure lette dal ChangeLog. Per ogni file
+ * contiene il tipo di modifica, il path della classe (il nuovo path per i RENAME) e le linee aggiunte
+ * e rimosse (solo per i MODIFY); per il commit il ChgSetSize e l'autore. Path ed autore sono salvati
+ * come id dello StringDictionary.
+ */
+public class CommitChanges {
+
+	private int chgSetSize;
+	private int authorId;
+	private List<FileChange> files;
+
+	public CommitChanges(int chgSetSize, String author) {
+		this(chgSetSize, author == null ? StringDictionary.NOT_FOUND : StringDictionary.AUTHORS.getId(author));
+	}
+
+	public CommitChanges(int chgSetSize, int authorId) {
+		this.chgSetSize = chgSetSize;
+		this.authorId = authorId;
+		this.files = new ArrayList<>();
+	}
+
+	public void addFile(ChangeType changeType, String path, int linesAdded, int linesDeleted) {
+		addFile(changeType, StringDictionary.PATHS.getId(path), linesAdded, linesDeleted);
+	}
+
+	public void addFile(ChangeType changeType, int pathId, int linesAdded, int linesDeleted) {
+		this.files.add(new FileChange(changeType, pathId, linesAdded, linesDeleted));
+	}
+
+
+	/*===============================================================================================
+	 * Getters & Setters
+	 */
+	public int getChgSetSize() {
+		return chgSetSize;
+	}
+
+	public String getAuthor() {
+		return authorId == StringDictionary.NOT_FOUND ? null : StringDictionary.AUTHORS.get(authorId);
+	}
+
+	public int getAuthorId() {
+		return authorId;
+	}
+
+	public List<FileChange> getFiles() {
+		return files;
+	}
+
+
+	/*
+	 * Modifica di un singolo file Java
+	 */
+	public static class FileChange {
+		private ChangeType changeType;
+		private int pathId;
+		private int linesAdded;
+		private int linesDeleted;
+
+		public FileChange(ChangeType changeType, int pathId, int linesAdded, int linesDeleted) {
+			this.changeType = changeType;
+			this.pathId = pathId;
+			this.linesAdded = linesAdded;
+			this.linesDeleted = linesDeleted;
+		}
+
+		public ChangeType getChangeType() {
+			return changeType;
+		}
+
+		public String getPath() {
+			return StringDictionary.PATHS.get(pathId);
+		}
+
+		public int getPathId() {
+			return pathId;
+		}
+
+		public int getLinesAdded() {
+			return linesAdded;
+		}
+
+		public int getLinesDeleted() {
+			return linesDeleted;
+		}
+	}
+}
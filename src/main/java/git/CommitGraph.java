@@ -0,0 +1,416 @@
+package git;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/*
+ * Commit graph del progetto (Parameters.COMMIT_GRAPH), salvato su disco e letto tramite memory mapping, così
+ * che i walk dei run successivi non debbano più fare il parsing dei commit. Contiene tutti i commit
+ * raggiungibili dai tag delle release, con ordinali in ordine topologico (i parent prima dei figli): un
+ * solo passaggio al contrario sugli ordinali visita ogni commit dopo tutti i suoi figli (vedi
+ * getReleases() e getReachable()). Quando compaiono release nuove vengono analizzati soltanto i commit
+ * non ancora presenti, che vengono aggiunti in coda in una nuova generazione del file (vedi FileGenerations),
+ * senza sostituire quella ancora mappata. Formato (big endian):
+ *   header:   MAGIC, VERSION, numero di commit, numero di parent, numero di stringhe
+ *   commit:   20 byte di ObjectId, data in secondi, stringa dell'autore, stringa delle chiavi dei ticket
+ *             (separate da spazi), posizione del primo parent, numero di parent
+ *   parent:   ordinali dei parent
+ *   indice:   ordinali dei commit ordinati per ObjectId, per la ricerca binaria
+ *   stringhe: lunghezza e byte UTF-8 di autori e chiavi dei ticket
+ */
+public class CommitGraph {
+
+	private static Logger logger = Logger.getLogger(CommitGraph.class.getName());
+
+	private static final int MAGIC = 0x43475248;	// "CGRH"
+	private static final int VERSION = 3;			// Da incrementare se cambia il formato o l'estrazione delle chiavi dei ticket
+	private static final int HEADER_SIZE = 20;
+	private static final int COMMIT_SIZE = Constants.OBJECT_ID_LENGTH + 20;
+	public static final int NONE = Integer.MAX_VALUE;
+
+	private ByteBuffer buffer;
+	private int commitCount;
+	private int parentCount;
+	private int parentsOffset;
+	private int indexOffset;
+	private String[] strings;
+
+	private CommitGraph() {
+		this.commitCount = 0;
+		this.strings = new String[] { "" };
+	}
+
+
+	/*
+	 * Apre il commit graph e lo aggiorna con i commit delle release in input che non contiene ancora
+	 */
+	public static CommitGraph open(String fileName, ObjectAccess objects, List<GitRelease> releases) throws IOException {
+		CommitGraph graph = load(fileName);
+		List<ObjectId> missing = new ArrayList<>();
+		for (GitRelease r : releases) {
+			if (graph.getOrdinal(r.getCommit().getId()) < 0) {
+				missing.add(r.getCommit().getId());
+			}
+		}
+		if (!missing.isEmpty()) {
+			int previous = graph.commitCount;
+			graph.extend(fileName, objects, missing);
+			graph = load(fileName);
+			String output = String.format("Commit graph: %d commits added, %d total", graph.commitCount - previous, graph.commitCount);
+			logger.log(Level.INFO, output);
+		}
+		return graph;
+	}
+
+
+	/*
+	 * Carica in memory mapping la generazione più recente del file. Se il file non esiste o ha un formato
+	 * diverso ritorna un grafo vuoto
+	 */
+	private static CommitGraph load(String fileName) {
+		CommitGraph graph = new CommitGraph();
+		FileGenerations.deleteOld(fileName);
+		File file = FileGenerations.current(fileName);
+		if (file == null) {
+			return graph;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				return graph;
+			}
+			int commits = buffer.getInt(8);
+			int parents = buffer.getInt(12);
+			int stringCount = buffer.getInt(16);
+
+			String[] strings = new String[stringCount];
+			int offset = HEADER_SIZE + commits * COMMIT_SIZE + parents * 4 + commits * 4;
+			for (int i = 0; i < stringCount; i++) {
+				byte[] raw = new byte[buffer.getInt(offset)];
+				ByteBuffer view = buffer.duplicate();
+				((Buffer) view).position(offset + 4);	// Cast a Buffer per Java 8, come in ChangeLog
+				view.get(raw);
+				strings[i] = new String(raw, StandardCharsets.UTF_8);
+				offset += 4 + raw.length;
+			}
+
+			graph.buffer = buffer;
+			graph.commitCount = commits;
+			graph.parentCount = parents;
+			graph.parentsOffset = HEADER_SIZE + commits * COMMIT_SIZE;
+			graph.indexOffset = graph.parentsOffset + parents * 4;
+			graph.strings = strings;
+		} catch (IOException | RuntimeException e) {
+			logger.log(Level.WARNING, "Commit graph not loaded", e);
+			return new CommitGraph();
+		}
+		return graph;
+	}
+
+
+	/*
+	 * Analizza i commit raggiungibili dai tip in input e non ancora presenti, e scrive una nuova generazione
+	 * del file con i nuovi commit in coda. Il walk esclude tutto il grafo già salvato marcandone le teste come uninteresting
+	 */
+	private void extend(String fileName, ObjectAccess objects, List<ObjectId> tips) throws IOException {
+		List<RevCommit> added = new ArrayList<>();
+		try (ObjectReader reader = objects.newReader(); RevWalk walk = new RevWalk(reader)) {
+			walk.sort(RevSort.TOPO);
+			walk.sort(RevSort.REVERSE, true);
+			for (ObjectId tip : tips) {
+				walk.markStart(walk.parseCommit(tip));
+			}
+			for (int head : getHeads()) {
+				walk.markUninteresting(walk.parseCommit(getId(head)));
+			}
+			for (RevCommit c = walk.next(); c != null; c = walk.next()) {
+				added.add(c);
+			}
+		}
+
+		Map<ObjectId, Integer> addedOrdinals = new HashMap<>();
+		for (int i = 0; i < added.size(); i++) {
+			addedOrdinals.put(added.get(i).copy(), commitCount + i);
+		}
+		List<String> newStrings = new ArrayList<>(Arrays.asList(strings));
+		Map<String, Integer> stringIds = new HashMap<>();
+		for (int i = 0; i < newStrings.size(); i++) {
+			stringIds.putIfAbsent(newStrings.get(i), i);
+		}
+
+		int total = commitCount + added.size();
+		int[] authors = new int[added.size()];
+		int[] ticketKeys = new int[added.size()];
+		List<int[]> addedParents = new ArrayList<>();
+		int addedParentCount = 0;
+		for (int i = 0; i < added.size(); i++) {
+			RevCommit c = added.get(i);
+			List<Integer> parents = new ArrayList<>();
+			for (RevCommit p : c.getParents()) {
+				Integer ordinal = addedOrdinals.get(p);
+				if (ordinal == null) {
+					int stored = getOrdinal(p);
+					ordinal = stored < 0 ? null : stored;
+				}
+				if (ordinal != null) {
+					parents.add(ordinal);
+				}
+			}
+			authors[i] = internString(c.getAuthorIdent().getName(), newStrings, stringIds);
+			ticketKeys[i] = internString(String.join(" ", TicketIndex.extractTicketKeys(c.getFullMessage())), newStrings, stringIds);
+			addedParents.add(parents.stream().mapToInt(Integer::intValue).toArray());
+			addedParentCount += parents.size();
+		}
+
+		File file = FileGenerations.next(fileName);
+		File tmp = new File(fileName + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(total);
+			out.writeInt(parentCount + addedParentCount);
+			out.writeInt(newStrings.size());
+
+			// Commit già presenti, copiati senza modifiche, poi quelli nuovi
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			copyRegion(out, HEADER_SIZE, commitCount * COMMIT_SIZE);
+			int parentStart = parentCount;
+			for (int i = 0; i < added.size(); i++) {
+				RevCommit c = added.get(i);
+				c.copyRawTo(raw, 0);
+				out.write(raw);
+				out.writeInt(c.getCommitTime());
+				out.writeInt(authors[i]);
+				out.writeInt(ticketKeys[i]);
+				out.writeInt(parentStart);
+				out.writeInt(addedParents.get(i).length);
+				parentStart += addedParents.get(i).length;
+			}
+
+			copyRegion(out, parentsOffset, parentCount * 4);
+			for (int[] parents : addedParents) {
+				for (int p : parents) {
+					out.writeInt(p);
+				}
+			}
+
+			// Indice per ObjectId di tutti i commit
+			ObjectId[] ids = new ObjectId[total];
+			for (int i = 0; i < commitCount; i++) {
+				ids[i] = getId(i);
+			}
+			for (int i = 0; i < added.size(); i++) {
+				ids[commitCount + i] = added.get(i).copy();
+			}
+			Integer[] index = new Integer[total];
+			for (int i = 0; i < total; i++) {
+				index[i] = i;
+			}
+			Arrays.sort(index, (a, b) -> ids[a].compareTo(ids[b]));
+			for (int ordinal : index) {
+				out.writeInt(ordinal);
+			}
+
+			for (String s : newStrings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+		Files.move(tmp.toPath(), file.toPath());
+	}
+
+
+	private void copyRegion(DataOutputStream out, int offset, int length) throws IOException {
+		if (length == 0) {
+			return;
+		}
+		byte[] region = new byte[length];
+		ByteBuffer view = buffer.duplicate();
+		((Buffer) view).position(offset);
+		view.get(region);
+		out.write(region);
+	}
+
+	private static int internString(String value, List<String> strings, Map<String, Integer> ids) {
+		return ids.computeIfAbsent(value == null ? "" : value, v -> {
+			strings.add(v);
+			return strings.size() - 1;
+		});
+	}
+
+
+	/*
+	 * Ritorna i commit che non sono parent di nessun altro commit del grafo
+	 */
+	private List<Integer> getHeads() {
+		boolean[] parent = new boolean[commitCount];
+		for (int i = 0; i < parentCount; i++) {
+			parent[buffer.getInt(parentsOffset + i * 4)] = true;
+		}
+		List<Integer> heads = new ArrayList<>();
+		for (int i = 0; i < commitCount; i++) {
+			if (!parent[i]) {
+				heads.add(i);
+			}
+		}
+		return heads;
+	}
+
+
+	/*
+	 * Assegna ad ogni commit la posizione della prima release (nell'ordine di tips) che lo raggiunge, come
+	 * ReleaseWalk. I commit raggiungibili da excluded (se >= 0) non appartengono a nessuna release.
+	 * Ritorna NONE per i commit non assegnati
+	 */
+	public int[] getReleases(int[] tips, int excluded) {
+		int[] releases = new int[commitCount];
+		Arrays.fill(releases, NONE);
+		for (int i = 0; i < tips.length; i++) {
+			if (tips[i] >= 0) {
+				releases[tips[i]] = Math.min(releases[tips[i]], i);
+			}
+		}
+		boolean[] hidden = excluded < 0 ? new boolean[commitCount] : getReachable(excluded);
+		for (int c = commitCount - 1; c >= 0; c--) {
+			if (hidden[c]) {
+				releases[c] = NONE;
+				continue;
+			}
+			if (releases[c] == NONE) {
+				continue;
+			}
+			for (int p = getParentStart(c), end = p + getParentCount(c); p < end; p++) {
+				int parent = buffer.getInt(parentsOffset + p * 4);
+				releases[parent] = Math.min(releases[parent], releases[c]);
+			}
+		}
+		return releases;
+	}
+
+
+	/*
+	 * Ritorna i commit raggiungibili (compreso se stesso) dal commit in input
+	 */
+	public boolean[] getReachable(int ordinal) {
+		boolean[] reachable = new boolean[commitCount];
+		reachable[ordinal] = true;
+		for (int c = ordinal; c >= 0; c--) {
+			if (!reachable[c]) {
+				continue;
+			}
+			for (int p = getParentStart(c), end = p + getParentCount(c); p < end; p++) {
+				reachable[buffer.getInt(parentsOffset + p * 4)] = true;
+			}
+		}
+		return reachable;
+	}
+
+
+	/*
+	 * Ritorna l'ordinale del commit, -1 se il commit non è nel grafo (ricerca binaria sull'indice)
+	 */
+	public int getOrdinal(AnyObjectId id) {
+		byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+		id.copyRawTo(raw, 0);
+		ByteBuffer target = ByteBuffer.wrap(raw);
+		int low = 0;
+		int high = commitCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int ordinal = buffer.getInt(indexOffset + mid * 4);
+			int cmp = compareId(ordinal, target);
+			if (cmp == 0) {
+				return ordinal;
+			}
+			if (cmp < 0) {
+				low = mid + 1;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+		return -1;
+	}
+
+	private int compareId(int ordinal, ByteBuffer target) {
+		int offset = HEADER_SIZE + ordinal * COMMIT_SIZE;
+		for (int w = 0; w < 5; w++) {
+			int cmp = Integer.compareUnsigned(buffer.getInt(offset + w * 4), target.getInt(w * 4));
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return 0;
+	}
+
+
+	/*===============================================================================================
+	 * Getters & Setters
+	 */
+	public int size() {
+		return commitCount;
+	}
+
+	public ObjectId getId(int ordinal) {
+		int offset = HEADER_SIZE + ordinal * COMMIT_SIZE;
+		int[] words = new int[5];
+		for (int w = 0; w < 5; w++) {
+			words[w] = buffer.getInt(offset + w * 4);
+		}
+		return ObjectId.fromRaw(words);
+	}
+
+	public int getCommitTime(int ordinal) {
+		return buffer.getInt(HEADER_SIZE + ordinal * COMMIT_SIZE + 20);
+	}
+
+	public String getAuthorName(int ordinal) {
+		return strings[buffer.getInt(HEADER_SIZE + ordinal * COMMIT_SIZE + 24)];
+	}
+
+	/*
+	 * Chiavi dei ticket Jira citati nel messaggio del commit (vedi TicketIndex.extractTicketKeys())
+	 */
+	public List<String> getTicketKeys(int ordinal) {
+		String keys = strings[buffer.getInt(HEADER_SIZE + ordinal * COMMIT_SIZE + 28)];
+		return keys.isEmpty() ? new ArrayList<>() : Arrays.asList(keys.split(" "));
+	}
+
+	private int getParentStart(int ordinal) {
+		return buffer.getInt(HEADER_SIZE + ordinal * COMMIT_SIZE + 32);
+	}
+
+	public int getParentCount(int ordinal) {
+		return buffer.getInt(HEADER_SIZE + ordinal * COMMIT_SIZE + 36);
+	}
+
+	public int getParent(int ordinal, int n) {
+		return buffer.getInt(parentsOffset + (getParentStart(ordinal) + n) * 4);
+	}
+}
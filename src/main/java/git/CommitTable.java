@@ -0,0 +1,223 @@
+package git;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import data.StringDictionary;
+
+/*
+ * Tabella compatta dei commit: i dati di ogni commit sono salvati in array paralleli indicizzati per
+ * ordinale (ObjectId come 20 byte, data in secondi dall'epoch, ordinale del primo parent, ordinale della
+ * release e id dell'autore nello StringDictionary.AUTHORS). Le release sono salvate una sola volta. Il messaggio viene
+ * mantenuto soltanto finché non ne vengono estratte le chiavi dei ticket (vedi dropMessages()).
+ * I GitCommit sono soltanto un riferimento ad una riga della tabella.
+ */
+public class CommitTable {
+
+	private static final int NONE = -1;
+	private static final int EXTERNAL = -2;		// Parent non presente nella tabella (vedi externalParents)
+
+	private int size;
+	private byte[] ids;
+	private int[] times;
+	private int[] parents;
+	private int[] releases;
+	private int[] authors;
+	private int[] changedPaths;
+	private String[] messages;
+
+	private Map<Integer, ObjectId> pendingParents;		// Parent non ancora risolti in ordinali (vedi resolveParents())
+	private Map<Integer, ObjectId> externalParents;
+	private List<GitRelease> releaseList;
+	private Map<GitRelease, Integer> releaseIndex;
+
+	public CommitTable() {
+		this(16);
+	}
+
+	public CommitTable(int capacity) {
+		capacity = Math.max(1, capacity);
+		this.ids = new byte[capacity * Constants.OBJECT_ID_LENGTH];
+		this.times = new int[capacity];
+		this.parents = new int[capacity];
+		this.releases = new int[capacity];
+		this.authors = new int[capacity];
+		this.changedPaths = new int[capacity];
+		this.messages = new String[capacity];
+		this.pendingParents = new HashMap<>();
+		this.externalParents = new HashMap<>();
+		this.releaseList = new ArrayList<>();
+		this.releaseIndex = new IdentityHashMap<>();
+	}
+
+
+	/*
+	 * Aggiunge un commit alla tabella e ritorna il suo ordinale
+	 */
+	public int add(AnyObjectId id, int commitTime, String message) {
+		if (size == times.length) {
+			grow();
+		}
+		int ordinal = size++;
+		id.copyRawTo(ids, ordinal * Constants.OBJECT_ID_LENGTH);
+		times[ordinal] = commitTime;
+		parents[ordinal] = NONE;
+		releases[ordinal] = NONE;
+		authors[ordinal] = NONE;
+		changedPaths[ordinal] = NONE;
+		messages[ordinal] = message;
+		return ordinal;
+	}
+
+
+	/*
+	 * Converte i parent impostati con setParentId() in ordinali della tabella. I parent non presenti
+	 * nella tabella (ad esempio il parent del commit più vecchio) restano salvati come ObjectId
+	 */
+	public void resolveParents() {
+		if (pendingParents.isEmpty()) {
+			return;
+		}
+		Map<ObjectId, Integer> ordinals = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			ordinals.put(getId(i), i);
+		}
+		for (Map.Entry<Integer, ObjectId> e : pendingParents.entrySet()) {
+			Integer parent = ordinals.get(e.getValue());
+			if (parent == null) {
+				parents[e.getKey()] = EXTERNAL;
+				externalParents.put(e.getKey(), e.getValue());
+			}
+			else {
+				parents[e.getKey()] = parent;
+			}
+		}
+		pendingParents.clear();
+	}
+
+
+	/*
+	 * Rilascia i messaggi di tutti i commit: va chiamato dopo averne estratto le chiavi dei ticket
+	 */
+	public void dropMessages() {
+		Arrays.fill(messages, null);
+	}
+
+
+	/*
+	 * Ingrandisce gli array della tabella
+	 */
+	private void grow() {
+		int capacity = times.length * 2;
+		ids = Arrays.copyOf(ids, capacity * Constants.OBJECT_ID_LENGTH);
+		times = Arrays.copyOf(times, capacity);
+		parents = Arrays.copyOf(parents, capacity);
+		releases = Arrays.copyOf(releases, capacity);
+		authors = Arrays.copyOf(authors, capacity);
+		changedPaths = Arrays.copyOf(changedPaths, capacity);
+		messages = Arrays.copyOf(messages, capacity);
+	}
+
+
+	/*===============================================================================================
+	 * Getters & Setters
+	 */
+	public int size() {
+		return size;
+	}
+
+	public ObjectId getId(int ordinal) {
+		return ObjectId.fromRaw(ids, ordinal * Constants.OBJECT_ID_LENGTH);
+	}
+
+	public void setId(int ordinal, AnyObjectId id) {
+		id.copyRawTo(ids, ordinal * Constants.OBJECT_ID_LENGTH);
+	}
+
+	public int getCommitTime(int ordinal) {
+		return times[ordinal];
+	}
+
+	public void setCommitTime(int ordinal, int commitTime) {
+		times[ordinal] = commitTime;
+	}
+
+	public int getParentOrdinal(int ordinal) {
+		return parents[ordinal];
+	}
+
+	public ObjectId getParentId(int ordinal) {
+		ObjectId pending = pendingParents.get(ordinal);
+		if (pending != null) {
+			return pending;
+		}
+		switch (parents[ordinal]) {
+		case NONE:
+			return null;
+		case EXTERNAL:
+			return externalParents.get(ordinal);
+		default:
+			return getId(parents[ordinal]);
+		}
+	}
+
+	public void setParentId(int ordinal, AnyObjectId parentId) {
+		parents[ordinal] = NONE;
+		externalParents.remove(ordinal);
+		pendingParents.remove(ordinal);
+		if (parentId != null) {
+			pendingParents.put(ordinal, parentId.copy());
+		}
+	}
+
+	public GitRelease getRelease(int ordinal) {
+		return releases[ordinal] == NONE ? null : releaseList.get(releases[ordinal]);
+	}
+
+	public void setRelease(int ordinal, GitRelease release) {
+		if (release == null) {
+			releases[ordinal] = NONE;
+			return;
+		}
+		releases[ordinal] = releaseIndex.computeIfAbsent(release, r -> {
+			releaseList.add(r);
+			return releaseList.size() - 1;
+		});
+	}
+
+	public String getAuthorName(int ordinal) {
+		return authors[ordinal] == NONE ? null : StringDictionary.AUTHORS.get(authors[ordinal]);
+	}
+
+	public void setAuthorName(int ordinal, String name) {
+		authors[ordinal] = name == null ? NONE : StringDictionary.AUTHORS.getId(name);
+	}
+
+	public int getAuthorId(int ordinal) {
+		return authors[ordinal];
+	}
+
+	public int getChangedPaths(int ordinal) {
+		return changedPaths[ordinal];
+	}
+
+	public void setChangedPaths(int ordinal, int count) {
+		changedPaths[ordinal] = count;
+	}
+
+	public String getMessage(int ordinal) {
+		return messages[ordinal];
+	}
+
+	public void setMessage(int ordinal, String message) {
+		messages[ordinal] = message;
+	}
+}
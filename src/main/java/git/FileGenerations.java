@@ -0,0 +1,80 @@
+package git;
+
+import java.io.File;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Generazioni di un file letto in memory mapping (CommitGraph e ChangeLog). Un file mappato non può essere
+ * sostituito finché la mappatura non viene rilasciata dal garbage collector (su Windows il rename fallisce),
+ * quindi ogni scrittura crea una generazione nuova (nome.1, nome.2, ...) invece di sostituire quella aperta.
+ * Il file senza suffisso vale come generazione 0. Le generazioni precedenti vengono cancellate all'apertura
+ * successiva, prima di mappare il file: se sono ancora mappate restano su disco fino al run successivo.
+ */
+final class FileGenerations {
+
+	private static Logger logger = Logger.getLogger(FileGenerations.class.getName());
+
+	private FileGenerations() {}
+
+
+	/*
+	 * Ritorna la generazione più recente del file, null se non ne esiste nessuna
+	 */
+	static File current(String fileName) {
+		int generation = getLatest(fileName);
+		return generation < 0 ? null : getFile(fileName, generation);
+	}
+
+
+	/*
+	 * Ritorna il file in cui scrivere la prossima generazione, che non esiste ancora
+	 */
+	static File next(String fileName) {
+		return getFile(fileName, getLatest(fileName) + 1);
+	}
+
+
+	/*
+	 * Cancella tutte le generazioni tranne la più recente
+	 */
+	static void deleteOld(String fileName) {
+		int latest = getLatest(fileName);
+		for (int g = 0; g < latest; g++) {
+			File file = getFile(fileName, g);
+			if (file.exists() && !file.delete()) {
+				logger.log(Level.FINE, "Old generation not deleted: {0}", file);
+			}
+		}
+	}
+
+
+	private static File getFile(String fileName, int generation) {
+		return new File(generation == 0 ? fileName : fileName + "." + generation);
+	}
+
+
+	/*
+	 * Ritorna la generazione più recente presente su disco, -1 se non ce n'è nessuna
+	 */
+	private static int getLatest(String fileName) {
+		File base = new File(fileName);
+		File dir = base.getAbsoluteFile().getParentFile();
+		String prefix = base.getName() + ".";
+		int latest = base.exists() ? 0 : -1;
+		String[] names = dir == null ? null : dir.list();
+		if (names == null) {
+			return latest;
+		}
+		for (String name : names) {
+			if (name.startsWith(prefix) && name.length() > prefix.length() && name.substring(prefix.length()).chars().allMatch(Character::isDigit)) {
+				try {
+					latest = Math.max(latest, Integer.parseInt(name.substring(prefix.length())));
+				} catch (NumberFormatException e) {
+					// Suffisso fuori dal range degli int: non è una generazione
+				}
+			}
+		}
+		return latest;
+	}
+}
@@ -1,99 +1,127 @@
 package git;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.PersonIdent;
 
 import jira.JiraTicket;
 
+/*
+ * Riferimento ad una riga di una CommitTable: id, data, parent, release, autore e messaggio
+ * sono salvati nella tabella, nel GitCommit restano soltanto ticket e chiavi dei ticket
+ */
 public class GitCommit {
-	ObjectId id;
-	Date date;
-	String message;
-	ObjectId parentID;
-	GitRelease release;
+	CommitTable table;
+	int ordinal;
 	JiraTicket ticket;
-	PersonIdent author;
-	
-	Logger logger = Logger.getLogger(GitCommit.class.getName());
+	List<String> ticketKeys;
 
-	public GitCommit(ObjectId id, Date date, String message) {
-		this.id = id;
-		this.date = date;
-		this.message = message;
+	private static Logger logger = Logger.getLogger(GitCommit.class.getName());
+
+	public GitCommit(CommitTable table, int ordinal) {
+		this.table = table;
+		this.ordinal = ordinal;
 	}
 
 	/*
 	 * Ritorna true se il commit ha nel messaggio il ticketID specificato in input
 	 */
 	public boolean hasTicketName(String ticketName) {
-		int index = this.message.indexOf(ticketName);
-		return (index!=-1);
+		return getTicketKeys().contains(ticketName);
+	}
+
+
+	/*
+	 * Ritorna le chiavi dei ticket Jira citati nel messaggio, estratte al primo accesso.
+	 * Va chiamato prima che il messaggio venga rilasciato (vedi CommitTable.dropMessages())
+	 */
+	public List<String> getTicketKeys() {
+		if (this.ticketKeys == null) {
+			List<String> keys = TicketIndex.extractTicketKeys(getMessage());
+			this.ticketKeys = keys.isEmpty() ? Collections.emptyList() : keys;
+		}
+		return this.ticketKeys;
+	}
+
+	/*
+	 * Imposta le chiavi dei ticket già estratte dal messaggio (ad esempio lette dal CommitGraph)
+	 */
+	public void setTicketKeys(List<String> keys) {
+		this.ticketKeys = keys.isEmpty() ? Collections.emptyList() : keys;
 	}
-	
+
 	/*
 	 * [DEBUG] Stampa a schermo tutte le informazioni del GitCommit
 	 */
 	public void print() {
-		String output = String.format("ID: %s%ndate: %s%nmessage: %s", this.id, this.date, this.message);
+		String output = String.format("ID: %s%ndate: %s%nmessage: %s", getId(), getDate(), getMessage());
 		logger.log(Level.INFO, output);
 	}
 
-	
+
 	/*
 	 * [DEBUG] Stampa a schermo tutte le informazioni del GitCommit senza messaggio
 	 */
 	public void printNoMsg() {
-		String output = String.format("ID: %s%ndate: %s", this.id, this.date);
-		
+		String output = String.format("ID: %s%ndate: %s", getId(), getDate());
+
 		logger.log(Level.INFO, output);
 	}
 
-	
+
 	/*===============================================================================================
 	 * Getters & Setters
 	 */
 	public Date getDate() {
-		return this.date;
+		return new Date(getCommitTime() * 1000L);
+	}
+
+	public void setDate(Date date) {
+		this.table.setCommitTime(this.ordinal, (int) (date.getTime() / 1000));
+	}
+
+	/*
+	 * Data del commit in secondi dall'epoch
+	 */
+	public int getCommitTime() {
+		return this.table.getCommitTime(this.ordinal);
 	}
 
 	public ObjectId getId() {
-		return id;
+		return this.table.getId(this.ordinal);
 	}
 
 	public void setId(ObjectId id) {
-		this.id = id;
+		this.table.setId(this.ordinal, id);
 	}
 
 	public void setParentID(ObjectId id) {
-		this.parentID = id;
+		this.table.setParentId(this.ordinal, id);
 	}
 
 	public ObjectId getParentID() {
-		return this.parentID;
+		return this.table.getParentId(this.ordinal);
 	}
 
 	public String getMessage() {
-		return message;
+		return this.table.getMessage(this.ordinal);
 	}
 
 	public void setMessage(String message) {
-		this.message = message;
+		this.table.setMessage(this.ordinal, message);
+		this.ticketKeys = null;
 	}
-	
+
 	public GitRelease getRelease() {
-		return release;
+		return this.table.getRelease(this.ordinal);
 	}
 
 	public void setRelease(GitRelease release) {
-		this.release = release;
-	}
-
-	public void setDate(Date date) {
-		this.date = date;
+		this.table.setRelease(this.ordinal, release);
 	}
 
 	public JiraTicket getTicket() {
@@ -104,12 +132,38 @@ public class GitCommit {
 		this.ticket = ticket;
 	}
 
-	public PersonIdent getAuthor() {
-		return author;
+	public String getAuthorName() {
+		return this.table.getAuthorName(this.ordinal);
+	}
+
+	public void setAuthorName(String name) {
+		this.table.setAuthorName(this.ordinal, name);
+	}
+
+	/*
+	 * Id dell'autore nello StringDictionary.AUTHORS, -1 se non impostato
+	 */
+	public int getAuthorId() {
+		return this.table.getAuthorId(this.ordinal);
+	}
+
+	/*
+	 * Path modificati rispetto al parent, -1 se non calcolati durante il log
+	 */
+	public int getChangedPaths() {
+		return this.table.getChangedPaths(this.ordinal);
+	}
+
+	public void setChangedPaths(int changedPaths) {
+		this.table.setChangedPaths(this.ordinal, changedPaths);
 	}
 
-	public void setAuthor(PersonIdent author) {
-		this.author = author;
+	public int getOrdinal() {
+		return ordinal;
 	}
-	
+
+	public CommitTable getTable() {
+		return table;
+	}
+
 }
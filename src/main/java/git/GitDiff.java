@@ -7,21 +7,22 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
 
 import tools.Parameters;
 
 public class GitDiff {
 	DiffEntry diff;
-	String content;
+	ChangeType changeType;
 	String type;
 	String path;
 	List<String> renamePaths;
 	
-	Logger logger = Logger.getLogger(GitDiff.class.getName());
+	private static Logger logger = Logger.getLogger(GitDiff.class.getName());
 	
 	public GitDiff (DiffEntry diff) {
 		this.diff = diff;
-		this.content = diff.toString();
+		this.changeType = diff.getChangeType();
 		parseDiffType();
 		if (isRename()) {
 			parseRename();
@@ -36,47 +37,27 @@ public class GitDiff {
 	 * Imposta il vecchio ed il nuovo path di GitDiff per un Diff di tipo RENAME
 	 */
 	public void parseRename() {
-		String separator = "->";
-		String strDiff = diff.toString();
-		int start1 = strDiff.indexOf(Parameters.RENAME) + Parameters.RENAME.length() +1;
-		int end1 = strDiff.lastIndexOf(separator);
-		String path1 = strDiff.substring(start1,end1);
-		int start2 = strDiff.indexOf(separator) + separator.length();
-		int end2 = strDiff.lastIndexOf("]");
-		String path2 = strDiff.substring(start2,end2);
-		
-		List<String> paths = new ArrayList<>(Arrays.asList(path1,path2));
+		List<String> paths = new ArrayList<>(Arrays.asList(diff.getOldPath(), diff.getNewPath()));
 		this.setRenamePaths(paths);
 	}
 	
 	
 	/*
-	 * Imposta il Path del GitDiff in base al contenuto del Diff
+	 * Imposta il Path del GitDiff in base al tipo del Diff: per un DELETE il path
+	 * è quello vecchio, altrimenti quello nuovo
 	 */
 	public void parseDiffPath() {
-		if (isModify()) {
-			String strDiff = diff.toString();
-			int start = strDiff.indexOf(Parameters.MODIFY) + Parameters.MODIFY.length() +1;
-			int end = strDiff.lastIndexOf("]");
-			this.setPath(strDiff.substring(start,end));
-		}
-		else if (isAdd()) {
-			String strDiff = diff.toString();
-			int start = strDiff.indexOf(Parameters.ADD) + Parameters.ADD.length() +1;
-			int end = strDiff.lastIndexOf("]");
-			this.setPath(strDiff.substring(start,end));
+		if (isModify() || isAdd()) {
+			this.setPath(diff.getNewPath());
 		}
 		else if (isDelete()) {
-			String strDiff = diff.toString();
-			int start = strDiff.indexOf(Parameters.DELETE) + Parameters.DELETE.length() +1;
-			int end = strDiff.lastIndexOf("]");
-			this.setPath(strDiff.substring(start,end));
+			this.setPath(diff.getOldPath());
 		}
 	}
 	
 	
 	/*
-	 * Imposta il tipo di GitDiff in base al contenuto del Diff
+	 * Imposta il tipo di GitDiff in base al ChangeType del Diff. I Diff di tipo COPY non hanno un tipo
 	 */
 	public void parseDiffType() {
 		if (isModify()) {
@@ -98,7 +79,7 @@ public class GitDiff {
 	 * [DEBUG] Stampa tutte le informazioni su un GitDiff
 	 */
 	public void print() {
-		String str = String.format("CONT: %s%nTYPE: %s", this.content, this.type);
+		String str = String.format("CONT: %s%nTYPE: %s", this.diff, this.type);
 		logger.log(Level.INFO, str);
 		if (isRename()) {
 			String log = String.format("PATH1: %s%PATH2: ", this.renamePaths.get(0), this.renamePaths.get(1));
@@ -124,7 +105,7 @@ public class GitDiff {
 	}
 	
 	public static boolean isJava(DiffEntry diff) {
-		return diff.toString().contains(Parameters.FILTER_FILE_TYPE);
+		return diff.getOldPath().contains(Parameters.FILTER_FILE_TYPE) || diff.getNewPath().contains(Parameters.FILTER_FILE_TYPE);
 	}
 	
 	
@@ -161,12 +142,8 @@ public class GitDiff {
 		this.renamePaths = renamePaths;
 	}
 
-	public String getContent() {
-		return content;
-	}
-
-	public void setContent(String content) {
-		this.content = content;
+	public ChangeType getChangeType() {
+		return changeType;
 	}
 
 	public List<String> getRenamePaths() {
@@ -174,15 +151,15 @@ public class GitDiff {
 	}
 	
 	public boolean isModify() {
-		return this.content.contains(Parameters.MODIFY);
+		return this.changeType == ChangeType.MODIFY;
 	}
 	public boolean isRename() {
-		return this.content.contains(Parameters.RENAME);
+		return this.changeType == ChangeType.RENAME;
 	}
 	public boolean isAdd() {
-		return this.content.contains(Parameters.ADD);
+		return this.changeType == ChangeType.ADD;
 	}
 	public boolean isDelete() {
-		return this.content.contains(Parameters.DELETE);
+		return this.changeType == ChangeType.DELETE;
 	}
 }
@@ -1,98 +1,49 @@
 package git;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectReader;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.treewalk.TreeWalk;
-
-import data.Metrics;
+import data.MetricStore;
 import data.ProjectClass;
-import tools.Parameters;
-import tools.PathHandler;
+import data.SizeCache;
 
 public class GitRelease {
-		private Git git;
 		private int id;	//id incrementale della release
 		private GitCommit commit; // Riferimento al commit della release
 		private String name;
 		private Date date;
-		private List<ProjectClass> classList; 
+		private volatile List<ProjectClass> classList;	// null se non ancora calcolata o scaricata su disco (vedi ReleaseSpill)
+		private SizeCache sizeCache;	// Cache delle size condivisa tra tutte le release della repository
+		private ObjectAccess objects;	// Accesso agli oggetti della repository (vedi GitRepo.getObjectAccess())
+		private ReleaseSpill spill;		// Se impostato, la lista delle classi può essere scaricata su disco
 		
 		Logger logger = Logger.getLogger(GitRelease.class.getName());
 		
-		public GitRelease(Git git, GitCommit commit, String name, Date date) {
-			this.git = git;
+		public GitRelease(GitCommit commit, String name, Date date, SizeCache sizeCache, ObjectAccess objects) {
 			this.commit = commit;
 			this.name = name;
 			this.date = date;
-			this.fetchClassList();
-		}
-
-		/*	
-		 * Ritorna l'oggetto ProjectClass tramite il suo path
-		 */
-		public ProjectClass getProjectClass(String path) {
-			for (ProjectClass p:this.classList) {
-				if (p.getPath().equals(path)) {
-					return p;
-				}
-			}
-			return null;
+			this.sizeCache = sizeCache;
+			this.objects = objects;
 		}
 		
-		
 		/**
 		 * Cerca tutte le classi presenti su Git al momento della release ed effettua il
-		 * set della lista nel parametro di classe classList
+		 * set della lista nel parametro di classe classList. Non viene chiamato dal costruttore:
+		 * la lista viene materializzata solo per le release mantenute dopo il confronto con Jira
 		 */
 		public void fetchClassList(){
-			this.classList = new ArrayList<>();
-			
-	    	ObjectId objectId = null;
-			
-	    	ObjectReader reader = git.getRepository().newObjectReader();
-			RevWalk revWalk = new RevWalk(git.getRepository()); 
-			TreeWalk treeWalk = new TreeWalk(git.getRepository()); 
-			
-			ObjectId commitId = this.getCommit().getId();
-			
 			try {
-				RevCommit revCommit = revWalk.parseCommit(commitId);
-				ObjectId treeId = revCommit.getTree();
-		
-				treeWalk.reset(treeId);
-				treeWalk.setRecursive(true);
-				
-				while (treeWalk.next()) {
-					String classPath = treeWalk.getPathString();
-				    if (classPath.contains(Parameters.FILTER_FILE_TYPE)) {
-				    	String className = PathHandler.getNameFromPath(classPath);
-				    	ProjectClass projectClass = new ProjectClass(classPath,className,this);	    
-
-				    	objectId = treeWalk.getObjectId(0);
-				    	
-				    	// Calcolo e setto la size della classe
-				    	Metrics metrics = new Metrics();
-				    	metrics.calculateSize(objectId, reader);
-				    	projectClass.setMetrics(metrics);
-				    	classList.add(projectClass);
-				    }  	    	
-				}	   
-			} catch (Exception e){
+				new SnapshotBuilder(this.objects, this.sizeCache).build(Collections.singletonList(this));
+			} catch (IOException e){
 				e.printStackTrace();
-			} finally {
-				reader.close();
-				revWalk.dispose();
+				this.setClassList(new ArrayList<>());
 			}
-			this.setClassList(classList);	
 		}
 		
 		
@@ -108,13 +59,64 @@ public class GitRelease {
 		/*===============================================================================================
 		 * Getters & Setters
 		 */
+		/*
+		 * Imposta la lista delle classi e sposta le loro metriche in un unico MetricStore della release
+		 */
 		public void setClassList(List<ProjectClass> classList) {
+			MetricStore store = new MetricStore(classList.size());
+			for (int i = 0; i < classList.size(); i++) {
+				classList.get(i).moveMetrics(store, i);
+			}
 			this.classList = classList;
+			if (this.spill != null) {
+				this.spill.register(this);
+			}
 		}
 		
+		/*
+		 * Ritorna la lista delle classi della release, calcolandola al primo accesso oppure ricaricandola
+		 * se è stata scaricata su disco
+		 */
 		public List<ProjectClass> getClassList() {
+			List<ProjectClass> list = this.classList;
+			if (list != null) {
+				return list;
+			}
+			if (this.spill != null) {
+				list = this.spill.load(this);
+				if (list != null) {
+					return list;
+				}
+			}
+			this.fetchClassList();
 			return this.classList;
 		}
+		
+		/*
+		 * Imposta la lista delle classi ricaricata da ReleaseSpill, con le metriche già nello store della release
+		 */
+		void restoreClassList(List<ProjectClass> classList) {
+			this.classList = classList;
+		}
+		
+		/*
+		 * Rilascia la lista delle classi dopo che ReleaseSpill l'ha scritta su disco
+		 */
+		void dropClassList() {
+			this.classList = null;
+		}
+		
+		/*
+		 * Ritorna true se la lista delle classi è sullo heap
+		 */
+		boolean isClassListLoaded() {
+			return this.classList != null;
+		}
+		
+		public void setSpill(ReleaseSpill spill) {
+			this.spill = spill;
+		}
+
 
 		public int getId() {
 			return id;
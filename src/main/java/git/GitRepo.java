@@ -4,26 +4,27 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.LogCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
-import org.eclipse.jgit.diff.EditList;
-import org.eclipse.jgit.diff.RawTextComparator;
-import org.eclipse.jgit.errors.IncorrectObjectTypeException;
-import org.eclipse.jgit.errors.MissingObjectException;
-import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.util.io.DisabledOutputStream;
 
 import api.GitHubAPI;
+import data.MetricWindows;
 import data.ProjectClass;
+import data.SizeCache;
+import data.StringDictionary;
 import jira.JiraRelease;
 import jira.JiraTicket;
 import tools.DateHandler;
@@ -31,12 +32,23 @@ import tools.Parameters;
 
 public class GitRepo {
 
+	private static Logger logger = Logger.getLogger(GitRepo.class.getName());
+
 	String remote;
 	String local;
 	List<GitCommit> commitList;
 	List<GitCommit> fixCommitList;
 	List<GitRelease> releaseList;
 	private Git git;
+	private SizeCache sizeCache;
+	private ClassLineage lineage;
+	private List<List<GitCommit>> releaseCommits;	// Per ogni release, i suoi commit (dopo il binding)
+	private CommitTable commitTable;		// Dati dei commit della commitList (vedi fetchCommits())
+	private CommitTable tagTable;			// Dati dei commit dei tag delle release (vedi fetchReleases())
+	private MetricWindows metricWindows;	// Somme prefisse delle metriche, calcolate da setMetrics()
+	private ReleaseSpill spill;				// Con Parameters.SPILL_MODE, liste delle classi scaricate su disco oltre il budget
+	private ObjectAccess objects;			// Reader degli oggetti con il profilo della cache di JGit e le statistiche per fase
+	private Date oldestTagDate;				// Data del tag più vecchio, prima del filtro con le release di Jira
 
 	public GitRepo(String remote, String local) throws GitAPIException, IOException {
 		this.remote = remote;
@@ -45,6 +57,15 @@ public class GitRepo {
 		this.fixCommitList = new ArrayList<>();
 		this.releaseList = new ArrayList<>();
 		this.git = GitHubAPI.initializeRepository(remote, local);
+		this.objects = new ObjectAccess(this.git.getRepository(), Parameters.OBJECT_CACHE_PROFILE);
+		this.sizeCache = new SizeCache(Parameters.SIZE_CACHE_ENTRIES);
+		if (Parameters.PERSIST_SIZE_CACHE) {
+			this.sizeCache.load(getSizeCacheFile());
+		}
+		if (Parameters.SPILL_MODE) {
+			this.spill = new ReleaseSpill(Parameters.OUTPUT_PATH + Parameters.getGitProjectName() + Parameters.SPILL_FILE,
+					Parameters.SPILL_HEAP_BUDGET_MB << 20);
+		}
 		this.fetchReleases();
 	}
 
@@ -52,44 +73,147 @@ public class GitRepo {
 	/*
 	 * Ritorna la lista di tutti i commit effettuati sulla branch di default. Instanziamo un oggetto
 	 * GitCommit soltanto per i commit presenti anche su Jira, in modo da aumentare le prestazioni.
+	 * Con Parameters.GRAPH_RELEASE_ASSIGNMENT i commit vengono presi con un ReleaseWalk da tutti i tag delle
+	 * release e, nello stesso passaggio, viene assegnata loro la release (vedi bindRevisionsToReleases()).
+	 * Con Parameters.COMMIT_GRAPH i commit vengono letti dal CommitGraph salvato su disco, che viene
+	 * esteso soltanto con i commit delle release nuove (vedi fetchCommitsFromGraph()). Il CommitGraph è solo
+	 * una cache: se non può essere aperto o esteso i commit vengono presi come se fosse disabilitato.
 	 */
-	public void fetchCommits() throws GitAPIException, MissingObjectException, IncorrectObjectTypeException {
+	public void fetchCommits() throws GitAPIException, IOException {
 		GitRelease latest = GitHubAPI.getLatestGitRelease(this.releaseList);
 		GitRelease oldest = GitHubAPI.getOldestGitRelease(this.releaseList);
 		
-		// Prendiamo soltanto i commit delle Release Git che sono anche in Jira
-		LogCommand logCommand = this.git.log();		
-		logCommand = logCommand.addRange(oldest.getCommit().getId(),latest.getCommit().getId());
-		Iterable<RevCommit> logCommits = logCommand.call();
+		// Se abilitato, i commit che non toccano file Java vengono scartati direttamente dal RevWalk
+		JavaCommitFilter javaFilter = null;
+		if (Parameters.JAVA_ONLY_WALK) {
+			javaFilter = new JavaCommitFilter();
+		}
 
-		for (RevCommit c : logCommits) {
-			Date date = DateHandler.getDateFromEpoch(c.getCommitTime() * 1000L);
-			ObjectId parentID = null;
-			
-			// PersonIndent per NAuthors metric
-			
-			if (c.getParentCount() != 0) {
-				parentID = c.getParent(0);
+		this.objects.beginStage("commits");
+		this.commitTable = new CommitTable();
+		boolean fromGraph = Parameters.COMMIT_GRAPH && javaFilter == null && fetchCommitsFromGraph(latest, oldest);
+		if (!fromGraph && Parameters.GRAPH_RELEASE_ASSIGNMENT) {
+			try (ObjectReader reader = this.objects.newReader(); ReleaseWalk walk = new ReleaseWalk(reader)) {
+				walk.markReleases(this.releaseList, oldest);
+				for (RevCommit c = walk.next(); c != null; c = walk.next()) {
+					if (javaFilter != null && !javaFilter.include(walk, c)) {
+						continue;
+					}
+					GitCommit commit = addCommit(c, javaFilter);
+					int release = ReleaseWalk.getRelease(c);
+					if (release != ReleaseWalk.NONE) {
+						commit.setRelease(this.releaseList.get(release));
+					}
+				}
+			}
+		}
+		else if (!fromGraph) {
+			// Prendiamo soltanto i commit delle Release Git che sono anche in Jira
+			LogCommand logCommand = this.git.log();		
+			logCommand = logCommand.addRange(oldest.getCommit().getId(),latest.getCommit().getId());
+			if (javaFilter != null) {
+				logCommand = logCommand.setRevFilter(javaFilter);
+			}
+			for (RevCommit c : logCommand.call()) {
+				addCommit(c, javaFilter);
+			}
+		}
+		this.commitTable.resolveParents();
+		this.commitTable.dropMessages();
+		orderCommitList();
+		this.objects.endStage();
+	}
+	
+	
+	/*
+	 * Prende i commit dal CommitGraph, senza fare il parsing degli oggetti: gli stessi commit (e la stessa
+	 * assegnazione alle release) del ReleaseWalk o del range del LogCommand. Gli ordinali vengono visitati
+	 * al contrario, cioè i figli prima dei parent come nei walk. Ritorna false, senza aggiungere commit, se
+	 * il CommitGraph non può essere aperto o esteso
+	 */
+	private boolean fetchCommitsFromGraph(GitRelease latest, GitRelease oldest) {
+		CommitGraph graph;
+		try {
+			graph = CommitGraph.open(getCommitGraphFile(), this.objects, this.releaseList);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Commit graph not available, walking the commits", e);
+			return false;
+		}
+		int[] releases = null;
+		boolean[] included;
+		if (Parameters.GRAPH_RELEASE_ASSIGNMENT) {
+			int[] tips = new int[this.releaseList.size()];
+			for (int i = 0; i < tips.length; i++) {
+				tips[i] = graph.getOrdinal(this.releaseList.get(i).getCommit().getId());
+			}
+			releases = graph.getReleases(tips, graph.getOrdinal(oldest.getCommit().getId()));
+			included = new boolean[graph.size()];
+			for (int c = 0; c < included.length; c++) {
+				included[c] = releases[c] != CommitGraph.NONE;
+			}
+		}
+		else {
+			included = graph.getReachable(graph.getOrdinal(latest.getCommit().getId()));
+			boolean[] excluded = graph.getReachable(graph.getOrdinal(oldest.getCommit().getId()));
+			for (int c = 0; c < included.length; c++) {
+				included[c] &= !excluded[c];
 			}
+		}
 
-			GitCommit commit = new GitCommit(c.getId(), date, c.getFullMessage());
-			commit.setParentID(parentID); 
-			commit.setAuthor(c.getAuthorIdent());
+		for (int c = graph.size() - 1; c >= 0; c--) {
+			if (!included[c]) {
+				continue;
+			}
+			int ordinal = this.commitTable.add(graph.getId(c), graph.getCommitTime(c), null);
+			GitCommit commit = new GitCommit(this.commitTable, ordinal);
+			commit.setAuthorName(graph.getAuthorName(c));
+			if (graph.getParentCount(c) != 0) {
+				commit.setParentID(graph.getId(graph.getParent(c, 0)));
+			}
+			commit.setTicketKeys(graph.getTicketKeys(c));
+			if (releases != null) {
+				commit.setRelease(this.releaseList.get(releases[c]));
+			}
 			this.commitList.add(commit);
 		}
-		orderCommitList();
+		return true;
+	}
+	
+	
+	/*
+	 * Aggiunge il commit alla CommitTable ed alla lista dei commit
+	 */
+	private GitCommit addCommit(RevCommit c, JavaCommitFilter javaFilter) {
+		int ordinal = this.commitTable.add(c.getId(), c.getCommitTime(), c.getFullMessage());
+		GitCommit commit = new GitCommit(this.commitTable, ordinal);
+		
+		// Nome dell'autore per NAuthors metric
+		commit.setAuthorName(c.getAuthorIdent().getName());
+		if (c.getParentCount() != 0) {
+			commit.setParentID(c.getParent(0));
+		}
+		if (javaFilter != null) {
+			commit.setChangedPaths(javaFilter.getChangedPaths(c));
+		}
+		
+		// Il messaggio serve soltanto per il collegamento con i ticket: estraggo subito le chiavi
+		commit.getTicketKeys();
+		this.commitList.add(commit);
+		return commit;
 	}
 
 	/*
 	 * Ordina la lista dei commit in base alla data e la setta nel parametro di classe
 	 */
 	public void orderCommitList() {
-		this.commitList.sort(Comparator.comparing(GitCommit::getDate));
+		this.commitList.sort(Comparator.comparingInt(GitCommit::getCommitTime));
+		this.releaseCommits = null;
 	}
 
 	
 	/*
-	 * Ottiene la lista di tutte le release della repository Git
+	 * Ottiene la lista di tutte le release della repository Git. Per ogni tag vengono salvati
+	 * soltanto nome, commit e data: la lista delle classi viene calcolata con fetchClassLists()
 	 */
 	public void fetchReleases() throws IOException {
 		List<Ref> tagList = null;
@@ -100,7 +224,10 @@ public class GitRepo {
 			e.printStackTrace();
 		}
 
-		RevWalk walk = new RevWalk(this.git.getRepository());
+		this.objects.beginStage("releases");
+		ObjectReader reader = this.objects.newReader();
+		RevWalk walk = new RevWalk(reader);
+		this.tagTable = new CommitTable(tagList.size());
 
 		for (Ref tag : tagList) {
 			
@@ -114,12 +241,16 @@ public class GitRepo {
 			RevCommit commit = walk.parseCommit(tag.getObjectId());
 			Date releaseDate = DateHandler.getDateFromEpoch(commit.getCommitTime() * 1000L);
 
-			GitCommit gitCommit = new GitCommit(commit.getId(), releaseDate, commit.getFullMessage());
-			GitRelease release = new GitRelease(this.git, gitCommit, releaseName, releaseDate);
+			// I commit dei tag condividono una sola CommitTable, separata da quella della commitList
+			int ordinal = this.tagTable.add(commit.getId(), commit.getCommitTime(), commit.getFullMessage());
+			GitCommit gitCommit = new GitCommit(this.tagTable, ordinal);
+			GitRelease release = new GitRelease(gitCommit, releaseName, releaseDate, this.sizeCache, this.objects);
 			this.releaseList.add(release);
 		}
-		setDefaultAdditionDates();
 		walk.close();
+		reader.close();
+		this.oldestTagDate = GitHubAPI.getOldestGitRelease(this.releaseList).getDate();
+		this.objects.endStage();
 		
 		//il progetto "avro" presenta su Git i nomi delle release in forma: release-number, per questo effettuiamo una pulizia così da confrontarle con le release di Jira
 		if(this.remote.contains(Parameters.AVRO.toLowerCase())) {
@@ -130,61 +261,174 @@ public class GitRepo {
 	}
 	
 	
+	/*
+	 * Calcola la lista delle classi (e la relativa size) soltanto per le release della repository.
+	 * Va chiamato dopo aver impostato la lista delle release comuni con Jira. Le release vengono
+	 * elaborate in parallelo tramite SnapshotBuilder. Con Parameters.SPILL_MODE le liste delle classi che
+	 * superano il budget di memoria vengono scaricate su disco (vedi ReleaseSpill).
+	 */
+	public void fetchClassLists() throws IOException {
+		for (GitRelease r : this.releaseList) {
+			r.setSpill(this.spill);
+		}
+		this.objects.beginStage("snapshots");
+		new SnapshotBuilder(this.objects, this.sizeCache).build(this.releaseList);
+		this.lineage = null;
+		setDefaultAdditionDates();
+		this.objects.endStage();
+		
+		this.sizeCache.print();
+		if (Parameters.PERSIST_SIZE_CACHE) {
+			this.sizeCache.save(getSizeCacheFile());
+		}
+	}
+	
+	
+	/*
+	 * Ritorna il path del file in cui viene salvata la cache delle size del progetto
+	 */
+	private String getSizeCacheFile() {
+		return Parameters.OUTPUT_PATH + Parameters.getGitProjectName() + Parameters.SIZE_CACHE_FILE;
+	}
+	
+	
+	/*
+	 * Ritorna il path del file in cui viene salvato il ChangeLog delle modifiche dei commit del progetto
+	 */
+	private String getChangeLogFile() {
+		return Parameters.OUTPUT_PATH + Parameters.getGitProjectName() + Parameters.CHANGE_LOG_FILE;
+	}
+	
+	
+	/*
+	 * Ritorna il path del file in cui viene salvato il CommitGraph del progetto
+	 */
+	private String getCommitGraphFile() {
+		return Parameters.OUTPUT_PATH + Parameters.getGitProjectName() + Parameters.COMMIT_GRAPH_FILE;
+	}
+	
+	
+	/*
+	 * Ritorna il path del file in cui vengono salvati i rename e la lineage dei path del progetto
+	 */
+	private String getRenameCacheFile() {
+		return Parameters.OUTPUT_PATH + Parameters.getGitProjectName() + Parameters.RENAME_CACHE_FILE;
+	}
+	
+	
+	/*
+	 * Ritorna il path del file in cui viene salvato il checkpoint del mining del progetto
+	 */
+	private String getCheckpointFile() {
+		return Parameters.OUTPUT_PATH + Parameters.getGitProjectName() + Parameters.CHECKPOINT_FILE;
+	}
+	
+	
 	/*
 	 * Per ogni classe di ogni release, imposto (di default) la data di aggiunta su Git come la data della
-	 * prima release.
+	 * prima release, cioè del tag più vecchio della repository (anche se non è tra le release comuni con Jira).
 	 */
 	public void setDefaultAdditionDates() {
-		Date oldest = GitHubAPI.getOldestGitRelease(this.releaseList).getDate();
 		for (GitRelease r:this.releaseList) {
 			for (ProjectClass p:r.getClassList()) {
-				p.setDateAdded(oldest);
+				p.setDateAdded(this.oldestTagDate);
 			}
 		}
 	}
 
 	
 	/*
-	 * Ottiene la lista dei commit tra una release e quella successiva. Utilizzata
-	 * per assegnare ad ogni revisione la relativa release
+	 * Assegna a tutti i commit della repository la relativa release e salva, per ogni release, la lista dei
+	 * suoi commit nell'ordine della commitList (vedi getReleaseCommits()). Con Parameters.GRAPH_RELEASE_ASSIGNMENT
+	 * la release è già stata assegnata da fetchCommits() in base al grafo dei commit, altrimenti è la prima
+	 * release con data successiva o uguale a quella del commit.
 	 */
-	public void getRevisionsBetweenTwoReleases(GitRelease startRelease, GitRelease endRelease) {
-		Date startDate;
-		Date endDate = endRelease.getDate();
-		Date commitDate;
-
-		if (startRelease == null) {
-			startDate = DateHandler.getDateFromEpoch(0);
-		} else {
-			startDate = startRelease.getDate();
+	public void bindRevisionsToReleases() {
+		if (Parameters.GRAPH_RELEASE_ASSIGNMENT) {
+			Map<GitRelease, List<GitCommit>> commits = new IdentityHashMap<>();
+			for (GitRelease r : this.releaseList) {
+				commits.put(r, new ArrayList<>());
+			}
+			for (GitCommit c : this.commitList) {
+				List<GitCommit> releaseCommits = c.getRelease() == null ? null : commits.get(c.getRelease());
+				if (releaseCommits != null) {
+					releaseCommits.add(c);
+				}
+			}
+			this.releaseCommits = new ArrayList<>();
+			for (GitRelease r : this.releaseList) {
+				this.releaseCommits.add(commits.get(r));
+			}
 		}
-
-		for (GitCommit c : this.commitList) {
-			commitDate = c.getDate();
-			if (commitDate.after(startDate) && (commitDate.before(endDate) || commitDate.equals(endDate))) {
-				c.setRelease(endRelease);
+		else {
+			this.releaseCommits = bindRevisionsByDate(this.commitList, this.releaseList);
+		}
+	}
+	
+	
+	/*
+	 * Assegna ad ogni commit la prima release con data successiva o uguale a quella del commit. Commit e
+	 * release sono entrambi ordinati per data, quindi basta un solo passaggio di merge sulle due liste.
+	 * Ritorna, per ogni release, la sottolista dei suoi commit
+	 */
+	static List<List<GitCommit>> bindRevisionsByDate(List<GitCommit> commitList, List<GitRelease> releaseList) {
+		int n = releaseList.size();
+		int size = commitList.size();
+		long[] releaseDates = new long[n];
+		for (int i = 0; i < n; i++) {
+			releaseDates[i] = releaseList.get(i).getDate().getTime() / 1000;
+		}
+		
+		int[] firstCommit = new int[n + 1];
+		int pos = 0;
+		int k = 0;
+		
+		// I commit con data non successiva all'epoch non appartengono a nessuna release
+		while (k < size && commitList.get(k).getCommitTime() <= 0) {
+			k++;
+		}
+		firstCommit[0] = k;
+		
+		for (; k < size; k++) {
+			long commitDate = commitList.get(k).getCommitTime();
+			while (pos < n && releaseDates[pos] < commitDate) {
+				pos++;
+				firstCommit[pos] = k;
+			}
+			if (pos == n) {
+				break;		// Commit successivi all'ultima release
 			}
+			commitList.get(k).setRelease(releaseList.get(pos));
 		}
+		while (pos < n) {
+			pos++;
+			firstCommit[pos] = k;
+		}
+		List<List<GitCommit>> releaseCommits = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			releaseCommits.add(commitList.subList(firstCommit[i], firstCommit[i + 1]));
+		}
+		return releaseCommits;
 	}
-
+	
 	
 	/*
-	 * Assegna a tutti i commit della repository la relativa release, iterando il metodo getRevisionsBetweenTwoReleases()
+	 * Ritorna i commit assegnati alla release in input, nell'ordine della commitList.
+	 * Va chiamato dopo bindRevisionsToReleases().
 	 */
-	public void bindRevisionsToReleases() {
-		GitRelease start = null;
-		GitRelease end = null;
-
-		// Primo passo dell'algoritmo per la prima release
-		end = this.releaseList.get(0);
-		getRevisionsBetweenTwoReleases(null, end);
-
-		// Passo iterativo per le restanti release
-		for (int i = 0; i < releaseList.size() - 1; i++) {
-			start = this.releaseList.get(i);
-			end = this.releaseList.get(i + 1);
-			this.getRevisionsBetweenTwoReleases(start, end);
+	public List<GitCommit> getReleaseCommits(GitRelease release) {
+		return getReleaseCommits(this.releaseList.indexOf(release));
+	}
+	
+	
+	/*
+	 * Ritorna i commit assegnati alla release in posizione position nella lista delle release
+	 */
+	public List<GitCommit> getReleaseCommits(int position) {
+		if (this.releaseCommits == null || position < 0 || position >= this.releaseCommits.size()) {
+			return new ArrayList<>();
 		}
+		return this.releaseCommits.get(position);
 	}
 
 	
@@ -192,26 +436,23 @@ public class GitRepo {
 	 * Vengono mantenuti soltanto i commit di Git che hanno nel messaggio l'id del
 	 * Ticket di Jira. I JiraTicket che non hanno una corrispondenza vengono ora RIMOSSI dalla lista.
 	 * Ad ogni commit di tipo FixBug viene settato il riferimento al relativo JiraTicket.
+	 * I messaggi vengono letti una sola volta tramite il TicketIndex.
 	 */
 	public List<GitCommit> filterCommits(List<JiraTicket> tickets) {
 		List<GitCommit> filtered = new ArrayList<>();
-		boolean founded = false;
+		TicketIndex index = new TicketIndex(this.commitList);
 
 		Iterator<JiraTicket> iterator = tickets.iterator();
 		while (iterator.hasNext()) {
 			JiraTicket t = iterator.next();
-			for (GitCommit c : this.commitList) {
-				if (c.hasTicketName(t.getName())) {
-					filtered.add(c);
-					c.setTicket(t);
-					founded = true;
-					break;
-				}
+			GitCommit c = index.getFirstCommit(t.getName());
+			if (c != null) {
+				filtered.add(c);
+				c.setTicket(t);
 			}
-			if (!founded) {			// se il ticket non ha un relativo commit su Git, viene rimosso dalla lista di JiraTickets
+			else {			// se il ticket non ha un relativo commit su Git, viene rimosso dalla lista di JiraTickets
 				iterator.remove();
 			}
-			founded = false;
 		}
 		return filtered;
 	}
@@ -257,75 +498,17 @@ public class GitRepo {
 	 * Ritorna la release tramite il nome della versione (es. 4.4.0)
 	 */
 	public GitRelease getReleaseByName(String version) {
-		for (GitRelease r : this.releaseList) {
-			if (r.getName().equals(version)) {
-				return r;
-			}
-		}
-		return null;
+		return getLineage().getRelease(version);
 	}
 
 	
 	/*
 	 * Imposta tutte le metriche tramite i diff di ogni commit. In particolare
 	 * esamina tutte le DiffEntry del commit in input ed in base al tipo di commit (Revision/FixBug)
-	 * e al tipo di Diff (ADD/MODIFY/RENAME) calcola le metriche opportune
+	 * e al tipo di Diff (ADD/MODIFY/RENAME) calcola le metriche opportune (vedi MetricsEngine)
 	 */
 	public void calcMetricsFromDiff(GitCommit commit) throws IOException {
-		GitDiff gitDiff;
-		GitRelease releaseClass;
-		String pathClass;
-		
-		DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
-			diffFormatter.setRepository(git.getRepository());
-			diffFormatter.setDiffComparator(RawTextComparator.DEFAULT);
-			diffFormatter.setDetectRenames(true);
-
-		List<DiffEntry> diffEntries = diffFormatter.scan(commit.getParentID(), commit.getId());
-		List<DiffEntry> javaDiffs = GitDiff.filterJavaDiff(diffEntries);
-		diffFormatter.flush();
-		diffFormatter.close();
-		int chgSetSize = diffEntries.size();
-		
-		for (DiffEntry d : javaDiffs) {
-			gitDiff = new GitDiff(d);						
-			releaseClass = commit.getRelease();
-			pathClass = gitDiff.getPath();
-			
-			// Gestione del Rename
-			if (gitDiff.isRename()) {
-				pathClass = gitDiff.getRenamePaths().get(1);
-			}
-			
-			ProjectClass projectClass = releaseClass.getProjectClass(pathClass);
-			
-			// Se la classe è stata cancellata, non esiste al momento della release quindi non và considerata
-			if (projectClass == null) {
-				continue;
-			}		
-			
-			// Prendo la data di aggiunta della classe e la imposto anche per quella classe nelle future release
-			if (gitDiff.isAdd()) {
-				setAdditionDateOverReleases(projectClass, commit);
-			}
-			
-			// Se il commit è di tipo fixBug e il DIFF modify setto la buggyness e aumento il numero di commit FixBug
-			if (fixCommitList.contains(commit) && gitDiff.isModify()) {
-				setBuggynessWithAV(commit,pathClass);
-				projectClass.getMetrics().increaseNumberBugFixed();
-			}
-			
-			// Mi calcolo la LOC_TOUCHED solo per le modifiche su una classe
-			if (gitDiff.isModify()) {
-				EditList editList = diffFormatter.toFileHeader(d).toEditList();
-				projectClass.getMetrics().calculateLocTouched(editList);
-			}
-			
-			// Set del chgSetSize && numberRevisions a prescindere dal tipo di Diff
-			projectClass.getMetrics().increaseChgSetSize(chgSetSize);
-			projectClass.getMetrics().increaseNumberRevisions();
-			projectClass.getMetrics().calculateNAuth(commit.getAuthor().getName());
-		}
+		new MetricsEngine(this).runCommit(commit);
 	}
 
 	
@@ -334,16 +517,16 @@ public class GitRepo {
 	 * dall'ultima AV (versione precedente al Fix) fino alla prima AV (injected version)
 	 */
 	public void setBuggynessWithAV(GitCommit fixCommit,String pathClass) {
+		setBuggynessWithAV(fixCommit, StringDictionary.PATHS.lookup(pathClass));
+	}
+	
+	public void setBuggynessWithAV(GitCommit fixCommit,int pathId) {
 		JiraTicket fixTicket = fixCommit.getTicket();
 		List<JiraRelease> affectedVersions = fixTicket.getAffectedVersions();
-		
 		for (JiraRelease av:affectedVersions) {
-			GitRelease gitAv = getReleaseByName(av.getName());
-			if (gitAv != null) {
-				ProjectClass projClass = gitAv.getProjectClass(pathClass);
-				if (projClass!=null) {
-					projClass.setBuggy(true);				
-				}
+			ProjectClass projectClass = getLineage().getProjectClass(getLineage().getPosition(av.getName()), pathId);
+			if (projectClass != null) {
+				projectClass.setBuggy(true);
 			}
 		}
 	}
@@ -356,33 +539,32 @@ public class GitRepo {
 	 * data di aggiunta per la stessa classe nelle altre releases.
 	 */
 	public void setAdditionDateOverReleases(ProjectClass projectClass,GitCommit commit) {
-		projectClass.setDateAdded(commit.getDate());
-		List<GitRelease> newest = getReleasesFrom(commit.getRelease());
-		for (GitRelease r:newest) {
-			ProjectClass p = r.getProjectClass(projectClass.getPath());
-			if (p!=null) {
-				p.setDateAdded(commit.getDate());
+		setAdditionDateOverReleases(projectClass, commit, commit.getDate());
+	}
+	
+	public void setAdditionDateOverReleases(ProjectClass projectClass,GitCommit commit,Date dateAdded) {
+		projectClass.setDateAdded(dateAdded);
+		int pathId = projectClass.getPathId();
+		for (int i = getLineage().getFirstPositionAfter(commit.getRelease()); i < getLineage().getReleaseCount(); i++) {
+			ProjectClass next = getLineage().getProjectClass(i, pathId);
+			if (next != null) {
+				next.setDateAdded(dateAdded);
 			}
 		}
 	}
 	
 	
 	/*
-	 * Ritorna tutte le classi del progetto nelle varie release. Inoltre calcola l'AGE di ognuna delle classi
-	 * come la differenza tra la data di aggiunta e la data della release della classe.
+	 * Calcola l'AGE delle classi della release come la differenza tra la data di aggiunta e la data della
+	 * release, e ritorna la lista delle classi
 	 */
-	public List<ProjectClass> getAllProjectClasses() {
-		List<ProjectClass> list = new ArrayList<>();
-		for (GitRelease r:this.releaseList) {
-			for (ProjectClass p:r.getClassList()) {
-				Date additionDate = p.getDateAdded();
-				Date releaseDate = p.getRelease().getDate();
-				int age = DateHandler.getWeeksBetweenDates(additionDate, releaseDate);
-				p.getMetrics().setAge(age);
-				list.add(p);
-			}
+	public List<ProjectClass> setAges(GitRelease release) {
+		List<ProjectClass> classList = release.getClassList();
+		for (ProjectClass p:classList) {
+			int age = DateHandler.getWeeksBetweenDates(p.getDateAdded(), release.getDate());
+			p.getMetrics().setAge(age);
 		}
-		return list;
+		return classList;
 	}
 	
 	
@@ -390,50 +572,93 @@ public class GitRepo {
 	 * Ritorna tutte le release successive ad una release passata in input
 	 */
 	public List<GitRelease> getReleasesFrom(GitRelease start){
-		List<GitRelease> releases = new ArrayList<>();
-		for (GitRelease r:this.releaseList) {
-			if (r.getDate().after(start.getDate())) {
-				releases.add(r);
-			}
-		}
-		return releases;
+		return getLineage().getReleasesFrom(start);
 	}
 	
 	
 	/*
-	 * Calcola ed imposta tutte le metriche relative alle classi del progetto. Esegue il metodo
-	 * calcMetricsFromDiff() passando in input tutti i commit del progetto.
+	 * Calcola ed imposta tutte le metriche relative alle classi del progetto, elaborando tutti i commit
+	 * del progetto (vedi setMetrics(Consumer))
 	 */
 	public void setMetrics() throws IOException {
-		for (GitCommit c : this.commitList) {			
-			calcMetricsFromDiff(c);
+		setMetrics(null);
+	}
+	
+	
+	/*
+	 * Calcola ed imposta tutte le metriche relative alle classi del progetto, elaborando tutti i commit
+	 * del progetto. Con Parameters.PARALLEL_METRICS le release vengono elaborate in parallelo.
+	 * Con Parameters.INCREMENTAL_MINING le release già presenti nel checkpoint vengono ripristinate e
+	 * vengono elaborati soltanto i commit delle release nuove. Con Parameters.CHANGE_LOG le modifiche
+	 * dei commit già analizzati vengono lette dal ChangeLog invece che dai diff. Con Parameters.METRIC_WINDOWS
+	 * vengono calcolate anche le somme prefisse delle metriche per le finestre di release (vedi MetricWindows).
+	 * Le release del dataset (vedi getDatasetReleaseCount()) vengono passate a releaseConsumer, con l'AGE
+	 * già calcolata, non appena le loro classi non possono più essere modificate.
+	 */
+	public void setMetrics(Consumer<GitRelease> releaseConsumer) throws IOException {
+		MetricsEngine engine = new MetricsEngine(this, Parameters.PARALLEL_METRICS ? Parameters.THREADS : 1);
+		MiningCheckpoint checkpoint = null;
+		int firstRelease = 0;
+		if (Parameters.INCREMENTAL_MINING) {
+			checkpoint = MiningCheckpoint.load(getCheckpointFile());
+			firstRelease = checkpoint.restore(this);
+			engine.setCheckpoint(checkpoint);
+		}
+		if (Parameters.CHANGE_LOG) {
+			engine.setChangeLog(ChangeLog.open(getChangeLogFile()));
+		}
+		RenameCache renames = null;
+		if (Parameters.RENAME_CACHE) {
+			renames = RenameCache.load(getRenameCacheFile());
+			engine.setRenameCache(renames);
+		}
+		if (releaseConsumer != null) {
+			int datasetReleases = getDatasetReleaseCount();
+			engine.setReleaseConsumer(r -> {
+				if (getLineage().getPosition(r) < datasetReleases) {
+					setAges(r);
+					releaseConsumer.accept(r);
+				}
+			});
+		}
+		
+		this.metricWindows = engine.getMetricWindows();		// Completate release per release durante run()
+		this.objects.beginStage("metrics");
+		engine.run(firstRelease);
+		this.objects.endStage();
+		engine.printStats();
+		
+		if (checkpoint != null) {
+			checkpoint.save(getCheckpointFile());
+		}
+		if (Parameters.CHANGE_LOG) {
+			engine.writeChangeLog(getChangeLogFile());
+		}
+		if (renames != null) {
+			renames.print();
+			renames.save(getRenameCacheFile());
 		}
 	}
 	
-	public List<ProjectClass> getClasses() {
+	
+	/*
+	 * Cancella i file della spill mode, da chiamare dopo aver scritto il dataset
+	 */
+	public void closeSpill() {
+		if (this.spill != null) {
+			this.spill.print();
+			this.spill.close();
+		}
+	}
+	
+	/*
+	 * Numero di release (le prime) che finiscono nel dataset: per openjpa soltanto la prima metà
+	 */
+	public int getDatasetReleaseCount() {
 		if (Parameters.getGitProjectName().equalsIgnoreCase("openjpa"))
-			return getHalfClasses();
-		else return getAllProjectClasses();
-	}
-	
-	public List<ProjectClass> getHalfClasses() {
-        int total = this.releaseList.size();
-        GitRelease endSnoring = this.releaseList.get(total/2); 
-        List<ProjectClass> list = new ArrayList<>();
-        for (GitRelease r:this.releaseList) {
-            if (r.equals(endSnoring)) {
-                return list;
-            }
-            for (ProjectClass p:r.getClassList()) {
-                Date additionDate = p.getDateAdded();
-                Date releaseDate = p.getRelease().getDate();
-                int age = DateHandler.getWeeksBetweenDates(additionDate, releaseDate);
-                p.getMetrics().setAge(age);
-                list.add(p);
-            }
-        }
-        return list;
-    }
+			return this.releaseList.size()/2;
+		else return this.releaseList.size();
+	}
 	
 	
 	
@@ -446,6 +671,7 @@ public class GitRepo {
 
 	public void setCommitList(List<GitCommit> commitList) {
 		this.commitList = commitList;
+		this.releaseCommits = null;
 	}
 	
 	public List<GitRelease> getReleaseList() {
@@ -454,6 +680,26 @@ public class GitRepo {
 
 	public void setReleaseList(List<GitRelease> releaseList) {
 		this.releaseList = releaseList;
+		this.lineage = null;
+		this.releaseCommits = null;
+	}
+	
+	/*
+	 * Ritorna l'indice delle classi tra le release, costruendolo al primo accesso
+	 */
+	public ClassLineage getLineage() {
+		if (this.lineage == null) {
+			this.lineage = new ClassLineage(this.releaseList);
+		}
+		return this.lineage;
+	}
+	
+	public Git getGit() {
+		return git;
+	}
+	
+	public ObjectAccess getObjectAccess() {
+		return this.objects;
 	}
 	
 	public List<GitCommit> getFixCommitList() {
@@ -463,4 +709,12 @@ public class GitRepo {
 	public void setFixCommitList(List<GitCommit> fixCommitList) {
 		this.fixCommitList = fixCommitList;
 	}
+	
+	public MetricWindows getMetricWindows() {
+		return metricWindows;
+	}
+	
+	public ReleaseSpill getSpill() {
+		return spill;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package git;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import tools.Parameters;
+
+/*
+ * Filtro del RevWalk che mantiene soltanto i commit che toccano almeno un file Java rispetto al primo
+ * parent. Il confronto viene fatto sugli alberi (senza leggere i blob) e nello stesso passaggio viene
+ * contato il numero di path modificati dal commit, usato come ChgSetSize senza dover fare il diff completo.
+ */
+public class JavaCommitFilter extends RevFilter {
+
+	private Map<AnyObjectId, Integer> changedPaths = new HashMap<>();
+
+	@Override
+	public boolean include(RevWalk walker, RevCommit commit) throws IOException {
+		RevCommit parent = null;
+		if (commit.getParentCount() != 0) {
+			parent = commit.getParent(0);
+			walker.parseHeaders(parent);
+		}
+
+		int[] count = countChangedPaths(walker.getObjectReader(), parent, commit);
+		changedPaths.put(commit.copy(), count[0]);
+		return count[1] > 0;
+	}
+
+
+	/*
+	 * Confronta l'albero del commit con quello del parent (albero vuoto se null). Ritorna il numero
+	 * di path modificati ed il numero di path Java modificati
+	 */
+	public static int[] countChangedPaths(ObjectReader reader, RevCommit parent, RevCommit commit) throws IOException {
+		int[] count = new int[2];
+		try (TreeWalk treeWalk = new TreeWalk(reader)) {
+			if (parent == null) {
+				treeWalk.addTree(new EmptyTreeIterator());
+			}
+			else {
+				treeWalk.addTree(parent.getTree());
+			}
+			treeWalk.addTree(commit.getTree());
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+			while (treeWalk.next()) {
+				count[0]++;
+				if (treeWalk.getPathString().endsWith(Parameters.FILTER_FILE_TYPE)) {
+					count[1]++;
+				}
+			}
+		}
+		return count;
+	}
+
+
+	/*
+	 * Ritorna il numero di path modificati da un commit accettato dal filtro, -1 se non è stato visitato
+	 */
+	public int getChangedPaths(AnyObjectId commitId) {
+		Integer count = changedPaths.get(commitId);
+		return count == null ? -1 : count;
+	}
+
+	@Override
+	public boolean requiresCommitBody() {
+		return false;
+	}
+
+	@Override
+	public RevFilter clone() {
+		return this;
+	}
+}
@@ -0,0 +1,155 @@
+package git;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.diff.Sequence;
+import org.eclipse.jgit.diff.SequenceComparator;
+import org.eclipse.jgit.errors.BinaryBlobException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.storage.pack.PackConfig;
+
+/*
+ * Calcola le EditList dei file modificati usando una cache LRU (indicizzata per ObjectId del blob) del
+ * contenuto e degli hash delle linee. Il blob "nuovo" di un commit è di solito il blob "vecchio" del
+ * commit successivo sullo stesso file, quindi ogni blob viene letto e le sue linee hashate una sola volta.
+ * Il risultato è identico a DiffFormatter.toFileHeader(d).toEditList() con RawTextComparator.DEFAULT.
+ */
+public class LineHashCache {
+
+	private static final HashedText BINARY = new HashedText(RawText.EMPTY_TEXT);
+	private static final HashedTextComparator COMPARATOR = new HashedTextComparator();
+
+	private final int maxEntries;
+	private final Map<ObjectId, HashedText> texts;
+	private final DiffAlgorithm algorithm;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public LineHashCache(int maxEntries, SupportedAlgorithm algorithm) {
+		this.maxEntries = maxEntries;
+		this.algorithm = DiffAlgorithm.getAlgorithm(algorithm);
+		this.texts = new LinkedHashMap<ObjectId, HashedText>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ObjectId, HashedText> eldest) {
+				return size() > LineHashCache.this.maxEntries;
+			}
+		};
+	}
+
+
+	/*
+	 * Ritorna la EditList di un DiffEntry di tipo MODIFY. I file binari hanno una EditList vuota
+	 */
+	public EditList getEditList(DiffEntry diff, ObjectReader reader) throws IOException {
+		HashedText a = getText(diff.getOldId().toObjectId(), reader);
+		HashedText b = getText(diff.getNewId().toObjectId(), reader);
+		if (a == BINARY || b == BINARY) {
+			return new EditList();
+		}
+		return algorithm.diff(COMPARATOR, a, b);
+	}
+
+
+	/*
+	 * Ritorna il testo del blob con gli hash delle linee, leggendolo soltanto se non è in cache
+	 */
+	private HashedText getText(ObjectId blobId, ObjectReader reader) throws IOException {
+		HashedText text;
+		synchronized (texts) {
+			text = texts.get(blobId);
+		}
+		if (text != null) {
+			hits.incrementAndGet();
+			return text;
+		}
+		misses.incrementAndGet();
+		try {
+			text = new HashedText(RawText.load(reader.open(blobId), PackConfig.DEFAULT_BIG_FILE_THRESHOLD));
+		} catch (BinaryBlobException e) {
+			text = BINARY;
+		}
+		synchronized (texts) {
+			texts.put(blobId, text);
+		}
+		return text;
+	}
+
+
+	/*
+	 * [DEBUG] Stampa hit e miss della cache
+	 */
+	public void print() {
+		long total = hits.get() + misses.get();
+		String output = String.format("Line hash cache: %d hits, %d misses (%.1f%% hit ratio)",
+				hits.get(), misses.get(), total == 0 ? 0 : hits.get() * 100.0 / total);
+		Logger.getLogger(LineHashCache.class.getName()).log(Level.INFO, output);
+	}
+
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+
+	/*
+	 * Testo di un blob con l'hash di ogni linea calcolato una sola volta
+	 */
+	private static class HashedText extends Sequence {
+		private final RawText raw;
+		private final int[] hashes;
+
+		HashedText(RawText raw) {
+			this.raw = raw;
+			this.hashes = new int[raw.size()];
+			for (int i = 0; i < hashes.length; i++) {
+				hashes[i] = RawTextComparator.DEFAULT.hash(raw, i);
+			}
+		}
+
+		@Override
+		public int size() {
+			return hashes.length;
+		}
+	}
+
+
+	/*
+	 * Confronta le linee usando gli hash salvati; a parità di hash confronta i byte come RawTextComparator.DEFAULT
+	 */
+	private static class HashedTextComparator extends SequenceComparator<HashedText> {
+
+		@Override
+		public boolean equals(HashedText a, int ai, HashedText b, int bi) {
+			return a.hashes[ai] == b.hashes[bi] && RawTextComparator.DEFAULT.equals(a.raw, ai, b.raw, bi);
+		}
+
+		@Override
+		public int hash(HashedText seq, int ptr) {
+			return seq.hashes[ptr];
+		}
+
+		@Override
+		public Edit reduceCommonStartEnd(HashedText a, HashedText b, Edit e) {
+			return RawTextComparator.DEFAULT.reduceCommonStartEnd(a.raw, b.raw, e);
+		}
+	}
+}
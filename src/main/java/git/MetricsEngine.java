@@ -0,0 +1,678 @@
+package git;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffConfig;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+
+import data.MetricWindows;
+import data.ProjectClass;
+import data.StringDictionary;
+import jira.JiraRelease;
+import tools.Parameters;
+
+/*
+ * Calcola le metriche delle classi a partire dai diff dei commit. I contatori di un commit toccano
+ * soltanto le classi della sua release, quindi le release vengono elaborate in parallelo, ognuna da
+ * un worker con il proprio ObjectReader e DiffFormatter. Gli effetti su altre release (buggyness sulle
+ * AV e data di aggiunta nelle release successive) vengono raccolti ed applicati completando le release
+ * in ordine, cioè nell'ordine dei commit, così da ottenere lo stesso risultato dell'elaborazione sequenziale.
+ */
+public class MetricsEngine {
+
+	private GitRepo repo;
+	private Repository repository;
+	private Set<GitCommit> fixCommits;
+	private LineHashCache lineHashCache;		// null se Parameters.LINE_HASH_CACHE è disabilitato
+	private MiningCheckpoint checkpoint;		// null se il checkpoint non viene aggiornato
+	private ChangeLog changeLog;				// null se le modifiche vengono sempre calcolate dai diff
+	private RenameCache renames;				// null se i rename vengono rilevati dal DiffFormatter
+	private Map<GitCommit, CommitChanges> minedChanges;	// Modifiche calcolate dai diff in questo run
+	private int threads;
+	private MetricWindows windows;				// Somme prefisse delle metriche, null se Parameters.METRIC_WINDOWS è disabilitato
+	private Consumer<GitRelease> releaseConsumer;	// Riceve le release man mano che diventano definitive
+	private int activated;						// Release le cui ADD sono già in additions (vedi applyEffects())
+
+	public MetricsEngine(GitRepo repo) {
+		this(repo, Parameters.THREADS);
+	}
+
+	public MetricsEngine(GitRepo repo, int threads) {
+		this.repo = repo;
+		this.repository = repo.getGit().getRepository();
+		this.fixCommits = Collections.newSetFromMap(new IdentityHashMap<>());
+		this.fixCommits.addAll(repo.getFixCommitList());
+		if (Parameters.LINE_HASH_CACHE) {
+			this.lineHashCache = new LineHashCache(Parameters.LINE_HASH_CACHE_ENTRIES, Parameters.DIFF_ALGORITHM);
+		}
+		this.threads = Math.max(1, threads);
+		this.minedChanges = Collections.synchronizedMap(new IdentityHashMap<>());
+		if (Parameters.METRIC_WINDOWS) {
+			this.windows = new MetricWindows(repo.getReleaseList());
+		}
+	}
+
+
+	/*
+	 * Calcola le metriche di tutti i commit, una release per task
+	 */
+	public void run() throws IOException {
+		run(0);
+	}
+
+
+	/*
+	 * Calcola le metriche dei commit delle release a partire dalla posizione firstRelease (le precedenti
+	 * sono state ripristinate da un MiningCheckpoint). I worker elaborano le release in parallelo, mentre
+	 * questo thread completa le release in ordine: applica gli effetti dei loro commit sulle altre release,
+	 * aggiunge le loro revisioni alle MetricWindows e passa al releaseConsumer ogni release che non può più
+	 * essere modificata (vedi getFinalPositions())
+	 */
+	public void run(int firstRelease) throws IOException {
+		int releases = repo.getReleaseList().size();
+		repo.getLineage();		// Costruito prima di avviare i worker, che lo usano solo in lettura
+		List<List<CrossReleaseEffect>> effects = new ArrayList<>();
+		for (int i = 0; i < releases; i++) {
+			effects.add(i < firstRelease ? new ArrayList<>() : null);
+		}
+		this.activated = 0;
+
+		int workers = Math.min(threads, Math.max(1, releases - firstRelease));
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		AtomicInteger next = new AtomicInteger(firstRelease);
+		List<Future<Void>> futures = new ArrayList<>();
+
+		for (int w = 0; w < workers; w++) {
+			futures.add(executor.submit(() -> {
+				try (ObjectReader reader = repo.getObjectAccess().newReader();
+						DiffFormatter diffFormatter = newDiffFormatter(reader)) {
+					int r;
+					while ((r = next.getAndIncrement()) < releases) {
+						List<CrossReleaseEffect> releaseEffects = new ArrayList<>();
+						GitRelease release = repo.getReleaseList().get(r);
+						pin(release);
+						try {
+							for (GitCommit c : repo.getReleaseCommits(r)) {
+								processCommit(c, reader, diffFormatter, releaseEffects);
+							}
+						} finally {
+							unpin(release);
+						}
+						synchronized (effects) {
+							effects.set(r, releaseEffects);
+							effects.notifyAll();
+						}
+					}
+				}
+				return null;
+			}));
+		}
+
+		// Le release sono ordinate per data come i loro commit, quindi completandole in ordine gli effetti
+		// vengono applicati nell'ordine dei commit, come nell'elaborazione sequenziale
+		try (ObjectReader reader = repo.getObjectAccess().newReader();
+				DiffFormatter diffFormatter = newDiffFormatter(reader)) {
+			int[] finalPositions = getFinalPositions();
+			Map<Integer, Date> additions = new HashMap<>();
+			int emitted = 0;
+			for (int k = 0; k < releases; k++) {
+				awaitRelease(effects, k, futures);
+				applyEffects(effects, k, additions);
+				if (windows != null) {
+					addRevisions(k, reader, diffFormatter);
+				}
+				while (emitted <= k && finalPositions[emitted] <= k) {
+					if (releaseConsumer != null) {
+						GitRelease release = repo.getReleaseList().get(emitted);
+						pin(release);
+						try {
+							releaseConsumer.accept(release);
+						} finally {
+							unpin(release);
+						}
+					}
+					emitted++;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+
+	/*
+	 * Attende che i worker abbiano elaborato la release in posizione position. Se un worker termina con
+	 * un errore, l'errore viene rilanciato
+	 */
+	private void awaitRelease(List<List<CrossReleaseEffect>> effects, int position, List<Future<Void>> futures)
+			throws InterruptedException, ExecutionException {
+		synchronized (effects) {
+			while (effects.get(position) == null) {
+				for (Future<Void> f : futures) {
+					if (f.isDone()) {
+						f.get();
+					}
+				}
+				effects.wait(100);
+			}
+		}
+	}
+
+
+	/*
+	 * Applica gli effetti dei commit della release in posizione position. Le ADD delle release precedenti
+	 * valgono per le classi di questa release se la release è successiva (per data) alla loro: la data di
+	 * aggiunta di ogni path viene mantenuta in additions e applicata quando si raggiunge la prima release
+	 * successiva, poi vengono applicate le ADD della release stessa. La buggyness viene applicata alle AV del
+	 * ticket, raggruppando le classi per release così che in spill mode ogni release venga caricata una volta.
+	 * Le release modificate vengono fissate in memoria, dato che i worker possono scaricarne altre su disco
+	 */
+	private void applyEffects(List<List<CrossReleaseEffect>> effects, int position, Map<Integer, Date> additions) {
+		GitRelease release = repo.getReleaseList().get(position);
+		pin(release);
+		try {
+			applyAdditions(effects, position, additions);
+		} finally {
+			unpin(release);
+		}
+
+		Map<Integer, List<Integer>> buggy = new TreeMap<>();
+		for (CrossReleaseEffect e : effects.get(position)) {
+			if (e.addition) {
+				continue;
+			}
+			for (JiraRelease av : e.commit.getTicket().getAffectedVersions()) {
+				int target = repo.getLineage().getPosition(av.getName());
+				if (repo.getLineage().contains(target, e.pathId)) {
+					buggy.computeIfAbsent(target, t -> new ArrayList<>()).add(e.pathId);
+				}
+			}
+		}
+		for (Map.Entry<Integer, List<Integer>> b : buggy.entrySet()) {
+			GitRelease target = repo.getReleaseList().get(b.getKey());
+			pin(target);
+			try {
+				for (int pathId : b.getValue()) {
+					repo.getLineage().getProjectClass(b.getKey(), pathId).setBuggy(true);
+				}
+			} finally {
+				unpin(target);
+			}
+		}
+	}
+
+
+	/*
+	 * Applica alle classi della release in posizione position le ADD delle release precedenti e della release stessa
+	 */
+	private void applyAdditions(List<List<CrossReleaseEffect>> effects, int position, Map<Integer, Date> additions) {
+		ClassLineage lineage = repo.getLineage();
+		while (activated < position && lineage.getFirstPositionAfter(repo.getReleaseList().get(activated)) <= position) {
+			for (CrossReleaseEffect e : effects.get(activated)) {
+				if (e.addition && e.date != null) {
+					additions.put(e.pathId, e.date);
+				}
+			}
+			synchronized (effects) {
+				effects.set(activated, Collections.emptyList());
+			}
+			activated++;
+		}
+		for (Map.Entry<Integer, Date> a : additions.entrySet()) {
+			ProjectClass p = lineage.getProjectClass(position, a.getKey());
+			if (p != null) {
+				p.setDateAdded(a.getValue());
+			}
+		}
+		Map<Integer, Date> releaseAdditions = new HashMap<>();
+		for (CrossReleaseEffect e : effects.get(position)) {
+			if (e.oldPathId != StringDictionary.NOT_FOUND) {
+				e.date = releaseAdditions.containsKey(e.oldPathId) ? releaseAdditions.get(e.oldPathId) : getDateAdded(position - 1, e.oldPathId);
+			}
+			e.record();
+			if (e.addition && e.date != null) {
+				lineage.getProjectClass(position, e.pathId).setDateAdded(e.date);
+				releaseAdditions.put(e.pathId, e.date);
+			}
+		}
+	}
+
+
+	/*
+	 * Ritorna la data di aggiunta della classe con path pathId nella release in posizione position, null
+	 * se la classe non esiste nella release
+	 */
+	private Date getDateAdded(int position, int pathId) {
+		ClassLineage lineage = repo.getLineage();
+		if (position < 0 || !lineage.contains(position, pathId)) {
+			return null;
+		}
+		GitRelease release = repo.getReleaseList().get(position);
+		pin(release);
+		try {
+			return lineage.getProjectClass(position, pathId).getDateAdded();
+		} finally {
+			unpin(release);
+		}
+	}
+
+
+	/*
+	 * Ritorna, per ogni release, la posizione dell'ultima release i cui commit possono modificarne le classi:
+	 * la release stessa (metriche e date di aggiunta) oppure l'ultima release con un commit FixBug che ha la
+	 * release tra le AV del ticket (buggyness)
+	 */
+	private int[] getFinalPositions() {
+		ClassLineage lineage = repo.getLineage();
+		int[] finalPositions = new int[lineage.getReleaseCount()];
+		for (int t = 0; t < finalPositions.length; t++) {
+			finalPositions[t] = t;
+		}
+		for (GitCommit c : fixCommits) {
+			int fix = lineage.getPosition(c.getRelease());
+			if (fix < 0 || c.getTicket() == null) {
+				continue;
+			}
+			for (JiraRelease av : c.getTicket().getAffectedVersions()) {
+				int target = lineage.getPosition(av.getName());
+				if (target >= 0) {
+					finalPositions[target] = Math.max(finalPositions[target], fix);
+				}
+			}
+		}
+		return finalPositions;
+	}
+
+
+	/*
+	 * Aggiunge alle MetricWindows le revisioni della release in posizione position, con gli stessi criteri
+	 * di applyChanges(). Le modifiche dei commit vengono riusate dal run corrente o dal ChangeLog, quindi i
+	 * diff vengono calcolati soltanto per i commit delle release ripristinate dal checkpoint che non sono
+	 * presenti nel log.
+	 */
+	private void addRevisions(int position, ObjectReader reader, DiffFormatter diffFormatter) throws IOException {
+		for (GitCommit c : repo.getReleaseCommits(position)) {
+			CommitChanges changes = getChanges(c, reader, diffFormatter);
+			for (CommitChanges.FileChange f : changes.getFiles()) {
+				if (!repo.getLineage().contains(position, f.getPathId())) {
+					continue;
+				}
+				boolean modify = f.getChangeType() == ChangeType.MODIFY;
+				windows.addRevision(f.getPathId(), position, modify ? f.getLinesAdded() : 0,
+						modify ? f.getLinesAdded() - f.getLinesDeleted() : 0,
+						modify && fixCommits.contains(c), changes.getChgSetSize());
+			}
+		}
+		windows.completeRelease(position);
+	}
+
+
+	/*
+	 * Impedisce che la release in elaborazione venga scaricata su disco (vedi ReleaseSpill)
+	 */
+	private void pin(GitRelease release) {
+		if (repo.getSpill() != null) {
+			repo.getSpill().pin(release);
+		}
+	}
+
+	private void unpin(GitRelease release) {
+		if (repo.getSpill() != null) {
+			repo.getSpill().unpin(release);
+		}
+	}
+
+
+	/*
+	 * Elabora un singolo commit in modo sequenziale, applicando subito gli effetti sulle altre release
+	 */
+	public void runCommit(GitCommit commit) throws IOException {
+		List<CrossReleaseEffect> commitEffects = new ArrayList<>();
+		try (ObjectReader reader = repo.getObjectAccess().newReader();
+				DiffFormatter diffFormatter = newDiffFormatter(reader)) {
+			processCommit(commit, reader, diffFormatter, commitEffects);
+		}
+		for (CrossReleaseEffect e : commitEffects) {
+			e.apply();
+		}
+	}
+
+
+	/*
+	 * Elabora un commit: le modifiche vengono lette dal ChangeLog se presenti, altrimenti calcolate dai diff
+	 */
+	private void processCommit(GitCommit commit, ObjectReader reader, DiffFormatter diffFormatter, List<CrossReleaseEffect> effects) throws IOException {
+		applyChanges(commit, getChanges(commit, reader, diffFormatter), effects);
+	}
+
+
+	/*
+	 * Ritorna le modifiche del commit: già calcolate in questo run, lette dal ChangeLog oppure calcolate dai diff
+	 */
+	private CommitChanges getChanges(GitCommit commit, ObjectReader reader, DiffFormatter diffFormatter) throws IOException {
+		CommitChanges changes = minedChanges.get(commit);
+		if (changes != null) {
+			return changes;
+		}
+		int ordinal = changeLog == null ? -1 : changeLog.getOrdinal(commit.getId());
+		if (ordinal >= 0) {
+			changes = changeLog.read(ordinal);
+			if (!followRenames() || !hasRenames(changes) || renames.hasLineage(commit.getId())) {
+				return changes;
+			}
+		}
+		changes = mineChanges(commit, reader, diffFormatter);
+		minedChanges.put(commit, changes);
+		return changes;
+	}
+
+
+	/*
+	 * Esamina tutte le DiffEntry Java del commit e per ognuna salva tipo, path della classe (per i RENAME il
+	 * nuovo path) e linee aggiunte/rimosse dei MODIFY
+	 */
+	private CommitChanges mineChanges(GitCommit commit, ObjectReader reader, DiffFormatter diffFormatter) throws IOException {
+		List<DiffEntry> diffEntries = diffFormatter.scan(commit.getParentID(), commit.getId());
+		if (renames != null) {
+			RenameDetector detector = new RenameDetector(reader, repository.getConfig().get(DiffConfig.KEY));
+			diffEntries = renames.detect(commit.getId(), diffEntries, detector);
+		}
+		List<DiffEntry> javaDiffs = GitDiff.filterJavaDiff(diffEntries);
+		int chgSetSize = Parameters.JAVA_ONLY_WALK ? countChangedPaths(commit, reader, javaDiffs) : diffEntries.size();
+		CommitChanges changes = new CommitChanges(chgSetSize, commit.getAuthorId());
+
+		for (DiffEntry d : javaDiffs) {
+			GitDiff gitDiff = new GitDiff(d);
+			String pathClass = gitDiff.getPath();
+
+			// Gestione del Rename
+			if (gitDiff.isRename()) {
+				pathClass = gitDiff.getRenamePaths().get(1);
+			}
+
+			// I Diff di tipo COPY non hanno un path e non modificano le metriche
+			if (pathClass == null) {
+				continue;
+			}
+
+			int linesAdded = 0;
+			int linesDeleted = 0;
+			if (gitDiff.isModify()) {
+				for (Edit edit : getEditList(d, reader, diffFormatter)) {
+					linesDeleted += edit.getEndA() - edit.getBeginA();
+					linesAdded += edit.getEndB() - edit.getBeginB();
+				}
+			}
+			changes.addFile(gitDiff.getChangeType(), pathClass, linesAdded, linesDeleted);
+		}
+		return changes;
+	}
+
+
+	/*
+	 * In base al tipo di commit (Revision/FixBug) e al tipo di modifica (ADD/MODIFY/RENAME) calcola le
+	 * metriche delle classi della release del commit. Gli effetti sulle altre release vengono aggiunti
+	 * alla lista in input.
+	 */
+	private void applyChanges(GitCommit commit, CommitChanges changes, List<CrossReleaseEffect> effects) {
+		GitRelease releaseClass = commit.getRelease();
+		List<String> modifiedClasses = new ArrayList<>();
+
+		for (CommitChanges.FileChange f : changes.getFiles()) {
+			ProjectClass projectClass = repo.getLineage().getProjectClass(releaseClass, f.getPathId());
+
+			// Se la classe è stata cancellata, non esiste al momento della release quindi non và considerata
+			if (projectClass == null) {
+				continue;
+			}
+
+			// Prendo la data di aggiunta della classe e la imposto anche per quella classe nelle future release
+			if (f.getChangeType() == ChangeType.ADD) {
+				effects.add(new CrossReleaseEffect(commit, f.getPathId(), true));
+			}
+
+			// La classe rinominata mantiene la data di aggiunta del vecchio path (vedi Parameters.FOLLOW_RENAMES)
+			if (f.getChangeType() == ChangeType.RENAME && followRenames()) {
+				int oldPathId = renames.getOldPathId(commit.getId(), f.getPathId());
+				if (oldPathId != StringDictionary.NOT_FOUND) {
+					effects.add(new CrossReleaseEffect(commit, f.getPathId(), oldPathId));
+				}
+			}
+
+			// Se il commit è di tipo fixBug e il DIFF modify setto la buggyness e aumento il numero di commit FixBug
+			if (fixCommits.contains(commit) && f.getChangeType() == ChangeType.MODIFY) {
+				effects.add(new CrossReleaseEffect(commit, f.getPathId(), false));
+				projectClass.getMetrics().increaseNumberBugFixed();
+			}
+
+			// Mi calcolo la LOC_TOUCHED solo per le modifiche su una classe
+			if (f.getChangeType() == ChangeType.MODIFY) {
+				modifiedClasses.add(f.getPath());
+				projectClass.getMetrics().calculateLocTouched(f.getLinesAdded(), f.getLinesDeleted());
+			}
+
+			// Set del chgSetSize && numberRevisions a prescindere dal tipo di Diff
+			projectClass.getMetrics().increaseChgSetSize(changes.getChgSetSize());
+			projectClass.getMetrics().increaseNumberRevisions();
+			projectClass.getMetrics().calculateNAuth(changes.getAuthorId());
+		}
+
+		if (checkpoint != null && !modifiedClasses.isEmpty()) {
+			checkpoint.recordModified(commit, modifiedClasses);
+		}
+	}
+
+
+	/*
+	 * Scrive il ChangeLog con tutti i commit della repository di cui si conoscono le modifiche: quelli
+	 * analizzati in questo run e quelli già presenti nel log precedente. Se non è stato analizzato
+	 * nessun commit nuovo il log non viene riscritto
+	 */
+	public void writeChangeLog(String fileName) {
+		if (minedChanges.isEmpty()) {
+			return;
+		}
+		List<ObjectId> commitIds = new ArrayList<>();
+		List<CommitChanges> changes = new ArrayList<>();
+		for (GitCommit c : repo.getCommitList()) {
+			CommitChanges commitChanges = minedChanges.get(c);
+			int ordinal = changeLog == null ? -1 : changeLog.getOrdinal(c.getId());
+			if (commitChanges == null && ordinal >= 0) {
+				commitChanges = changeLog.read(ordinal);
+			}
+			if (commitChanges != null) {
+				commitIds.add(c.getId());
+				changes.add(commitChanges);
+			}
+		}
+		ChangeLog.write(fileName, commitIds, changes);
+	}
+
+
+	/*
+	 * ChgSetSize quando il diff è ristretto ai file Java: numero di path modificati a livello di albero
+	 * (calcolato durante il log se possibile), contando una sola volta i rename Java rilevati dal diff
+	 */
+	private int countChangedPaths(GitCommit commit, ObjectReader reader, List<DiffEntry> javaDiffs) throws IOException {
+		int changedPaths = commit.getChangedPaths();
+		if (changedPaths < 0) {
+			try (RevWalk walk = new RevWalk(reader)) {
+				RevCommit c = walk.parseCommit(commit.getId());
+				RevCommit parent = commit.getParentID() == null ? null : walk.parseCommit(commit.getParentID());
+				changedPaths = JavaCommitFilter.countChangedPaths(reader, parent, c)[0];
+			}
+			commit.setChangedPaths(changedPaths);
+		}
+		for (DiffEntry d : javaDiffs) {
+			if (d.getChangeType() == ChangeType.RENAME) {
+				changedPaths--;
+			}
+		}
+		return changedPaths;
+	}
+
+
+	/*
+	 * Calcola la EditList di un file modificato, passando per la LineHashCache se abilitata
+	 */
+	private EditList getEditList(DiffEntry d, ObjectReader reader, DiffFormatter diffFormatter) throws IOException {
+		if (lineHashCache != null) {
+			return lineHashCache.getEditList(d, reader);
+		}
+		return diffFormatter.toFileHeader(d).toEditList();
+	}
+	
+	
+	/*
+	 * [DEBUG] Stampa le statistiche della LineHashCache
+	 */
+	public void printStats() {
+		if (lineHashCache != null) {
+			lineHashCache.print();
+		}
+	}
+
+
+	public void setCheckpoint(MiningCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	public void setReleaseConsumer(Consumer<GitRelease> releaseConsumer) {
+		this.releaseConsumer = releaseConsumer;
+	}
+
+	public MetricWindows getMetricWindows() {
+		return windows;
+	}
+
+	public void setChangeLog(ChangeLog changeLog) {
+		this.changeLog = changeLog;
+	}
+
+	public void setRenameCache(RenameCache renames) {
+		this.renames = renames;
+	}
+
+
+	/*
+	 * Le date di aggiunta seguono le classi attraverso i rename soltanto se è disponibile la lineage dei path
+	 */
+	private boolean followRenames() {
+		return Parameters.FOLLOW_RENAMES && renames != null;
+	}
+
+	private static boolean hasRenames(CommitChanges changes) {
+		for (CommitChanges.FileChange f : changes.getFiles()) {
+			if (f.getChangeType() == ChangeType.RENAME) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/*
+	 * Crea un DiffFormatter che usa il reader del worker
+	 */
+	private DiffFormatter newDiffFormatter(ObjectReader reader) {
+		DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
+		diffFormatter.setReader(reader, repository.getConfig());
+		diffFormatter.setDiffComparator(RawTextComparator.DEFAULT);
+		diffFormatter.setDiffAlgorithm(DiffAlgorithm.getAlgorithm(Parameters.DIFF_ALGORITHM));
+		if (renames == null) {
+			diffFormatter.setDetectRenames(true);
+			diffFormatter.getRenameDetector().setRenameLimit(Parameters.RENAME_LIMIT);
+		}
+		if (Parameters.JAVA_ONLY_WALK) {
+			// Diff e rilevamento dei rename soltanto sui file Java
+			diffFormatter.setPathFilter(PathSuffixFilter.create(Parameters.FILTER_FILE_TYPE));
+		}
+		return diffFormatter;
+	}
+
+
+	/*
+	 * Effetto di un commit sulle classi di altre release: data di aggiunta (ADD, oppure RENAME con la data di
+	 * aggiunta del vecchio path) o buggyness sulle Affected Versions del ticket (MODIFY di un commit FixBug).
+	 * La classe è identificata dall'id del path
+	 */
+	private class CrossReleaseEffect {
+		private GitCommit commit;
+		private int pathId;
+		private boolean addition;
+		private int oldPathId = StringDictionary.NOT_FOUND;	// Solo per i RENAME
+		private Date date;									// Data di aggiunta, per i RENAME risolta in ordine dei commit
+
+		CrossReleaseEffect(GitCommit commit, int pathId, boolean addition) {
+			this.commit = commit;
+			this.pathId = pathId;
+			this.addition = addition;
+			this.date = addition ? commit.getDate() : null;
+		}
+
+		CrossReleaseEffect(GitCommit commit, int pathId, int oldPathId) {
+			this(commit, pathId, true);
+			this.oldPathId = oldPathId;
+			this.date = null;
+		}
+
+		/*
+		 * Applica l'effetto su tutte le release
+		 */
+		void apply() {
+			if (oldPathId != StringDictionary.NOT_FOUND) {
+				date = getDateAdded(repo.getLineage().getPosition(commit.getRelease()) - 1, oldPathId);
+			}
+			record();
+			if (addition && date != null) {
+				repo.setAdditionDateOverReleases(repo.getLineage().getProjectClass(commit.getRelease(), pathId), commit, date);
+			}
+			else if (!addition) {
+				repo.setBuggynessWithAV(commit, pathId);
+			}
+		}
+
+		/*
+		 * Registra la data di aggiunta nel checkpoint: va chiamato nell'ordine dei commit
+		 */
+		void record() {
+			if (addition && date != null && checkpoint != null) {
+				checkpoint.recordAddition(commit, StringDictionary.PATHS.get(pathId), date);
+			}
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package git;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import data.Metrics;
+import data.ProjectClass;
+import data.StringDictionary;
+import tools.Parameters;
+
+/*
+ * Checkpoint del mining di un progetto, salvato su disco alla fine di GitRepo.setMetrics(). Per ogni release
+ * elaborata contiene il commit del tag, l'ultimo commit ed il numero di commit della release, le metriche e la
+ * data di aggiunta delle classi e le ADD avvenute nella release. Per ogni commit contiene le classi modificate
+ * (MODIFY) presenti nella sua release, così che buggyness e NumberBugFixes possano essere ricalcolate con i
+ * ticket correnti.
+ * Al run successivo le release già elaborate (con tag e commit invariati) vengono ripristinate e vengono
+ * analizzati soltanto i commit delle release nuove.
+ */
+public class MiningCheckpoint {
+
+	private static final int MAGIC = 0x4d434b50;	// "MCKP"
+	private static final int VERSION = 2;			// Da incrementare se cambia il calcolo delle metriche
+
+	private List<ReleaseState> releases = new ArrayList<>();
+	private Map<ObjectId, List<String>> modifiedClasses = new HashMap<>();
+	private List<Map<String, Date>> additions = new ArrayList<>();	// Per posizione della release, dopo restore()
+	private GitRepo repo;
+
+
+	/*
+	 * Carica il checkpoint da file. Se il file non esiste, ha un formato diverso o è stato creato con
+	 * impostazioni diverse, ritorna un checkpoint vuoto
+	 */
+	public static MiningCheckpoint load(String fileName) {
+		MiningCheckpoint checkpoint = new MiningCheckpoint();
+		File file = new File(fileName);
+		if (!file.exists()) {
+			return checkpoint;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(Parameters.getCheckpointSettings())) {
+				return checkpoint;
+			}
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			int releaseCount = in.readInt();
+			for (int i = 0; i < releaseCount; i++) {
+				ReleaseState state = new ReleaseState();
+				state.name = in.readUTF();
+				in.readFully(raw);
+				state.commitId = ObjectId.fromRaw(raw);
+				in.readFully(raw);
+				state.lastCommitId = ObjectId.fromRaw(raw);
+				state.commitCount = in.readInt();
+				int classCount = in.readInt();
+				for (int j = 0; j < classCount; j++) {
+					ClassState c = new ClassState();
+					String path = in.readUTF();
+					c.dateAdded = in.readLong();
+					c.metrics = in.readBoolean() ? Metrics.read(in) : null;
+					state.classes.put(path, c);
+				}
+				int additionCount = in.readInt();
+				for (int j = 0; j < additionCount; j++) {
+					state.additions.put(in.readUTF(), new Date(in.readLong()));
+				}
+				checkpoint.releases.add(state);
+			}
+			int commitCount = in.readInt();
+			for (int i = 0; i < commitCount; i++) {
+				in.readFully(raw);
+				ObjectId id = ObjectId.fromRaw(raw);
+				int pathCount = in.readInt();
+				List<String> paths = new ArrayList<>(pathCount);
+				for (int j = 0; j < pathCount; j++) {
+					paths.add(in.readUTF());
+				}
+				checkpoint.modifiedClasses.put(id, paths);
+			}
+		} catch (IOException e) {
+			Logger.getLogger(MiningCheckpoint.class.getName()).log(Level.WARNING, "Checkpoint not loaded", e);
+			return new MiningCheckpoint();
+		}
+		return checkpoint;
+	}
+
+
+	/*
+	 * Ripristina le release del checkpoint che coincidono con le prime release della repository (stesso nome,
+	 * stesso tag e stessi commit), insieme alle date di aggiunta che le loro ADD propagano alle release nuove
+	 * ed alla buggyness dei loro commit FixBug. Va chiamato dopo setFixCommitList(). Ritorna il numero di
+	 * release ripristinate: i commit da analizzare sono soltanto quelli delle release successive.
+	 */
+	public int restore(GitRepo repo) {
+		this.repo = repo;
+		List<GitRelease> current = repo.getReleaseList();
+		ClassLineage lineage = repo.getLineage();
+		int n = current.size();
+
+		int k = 0;
+		while (k < releases.size() && k < n && releases.get(k).matches(repo, k)) {
+			k++;
+		}
+		// Le ADD delle release ripristinate devono propagarsi a tutte le release nuove (vedi ClassLineage.getFirstPositionAfter)
+		while (k > 0 && k < n && !current.get(k).getDate().after(current.get(k - 1).getDate())) {
+			k--;
+		}
+
+		// Metriche e data di aggiunta delle classi delle release ripristinate
+		for (int i = 0; i < k; i++) {
+			ReleaseState state = releases.get(i);
+			for (ProjectClass p : current.get(i).getClassList()) {
+				ClassState c = state.classes.get(p.getPath());
+				p.setDateAdded(new Date(c.dateAdded));
+				if (c.metrics != null) {
+					p.getMetrics().copyCommitMetrics(c.metrics);
+				}
+			}
+		}
+
+		// Ultima ADD di ogni classe nelle release ripristinate, propagata alle release nuove
+		this.additions = new ArrayList<>();
+		Map<String, Date> lastAdditions = new HashMap<>();
+		for (int i = 0; i < n; i++) {
+			Map<String, Date> releaseAdditions = i < k ? releases.get(i).additions : new LinkedHashMap<>();
+			lastAdditions.putAll(releaseAdditions);
+			this.additions.add(releaseAdditions);
+		}
+		for (int j = k; j < n; j++) {
+			for (Map.Entry<String, Date> e : lastAdditions.entrySet()) {
+				ProjectClass p = lineage.getProjectClass(j, StringDictionary.PATHS.lookup(e.getKey()));
+				if (p != null) {
+					p.setDateAdded(e.getValue());
+				}
+			}
+		}
+
+		// Buggyness e NumberBugFixes dei commit FixBug delle release ripristinate, con i ticket correnti
+		Set<GitCommit> fixCommits = Collections.newSetFromMap(new IdentityHashMap<>());
+		fixCommits.addAll(repo.getFixCommitList());
+		Map<ObjectId, List<String>> restored = new HashMap<>();
+		for (int i = 0; i < k; i++) {
+			for (GitCommit c : repo.getReleaseCommits(i)) {
+				List<String> paths = modifiedClasses.get(c.getId());
+				if (paths == null) {
+					continue;
+				}
+				restored.put(c.getId(), paths);
+				if (fixCommits.contains(c)) {
+					for (String path : paths) {
+						lineage.getProjectClass(c.getRelease(), path).getMetrics().increaseNumberBugFixed();
+						repo.setBuggynessWithAV(c, path);
+					}
+				}
+			}
+		}
+		this.modifiedClasses = restored;
+		this.releases = new ArrayList<>(releases.subList(0, k));
+
+		String output = String.format("Checkpoint: %d/%d releases restored", k, n);
+		Logger.getLogger(MiningCheckpoint.class.getName()).log(Level.INFO, output);
+		return k;
+	}
+
+
+	/*
+	 * Registra le classi modificate (MODIFY) da un commit che esistono nella sua release
+	 */
+	public void recordModified(GitCommit commit, List<String> paths) {
+		synchronized (modifiedClasses) {
+			modifiedClasses.put(commit.getId(), paths);
+		}
+	}
+
+
+	/*
+	 * Registra la data di aggiunta di una classe (la data della ADD, oppure quella del vecchio path per un
+	 * RENAME). Chiamato nell'ordine dei commit, quindi resta l'ultima della release
+	 */
+	public void recordAddition(GitCommit commit, String path, Date date) {
+		int position = repo.getLineage().getPosition(commit.getRelease());
+		if (position >= 0) {
+			additions.get(position).put(path, date);
+		}
+	}
+
+
+	/*
+	 * Salva su file lo stato di tutte le release della repository, dopo il calcolo delle metriche
+	 */
+	public void save(String fileName) {
+		List<GitRelease> current = repo.getReleaseList();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(Parameters.getCheckpointSettings());
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			out.writeInt(current.size());
+			for (int i = 0; i < current.size(); i++) {
+				GitRelease r = current.get(i);
+				out.writeUTF(r.getName());
+				r.getCommit().getId().copyRawTo(raw, 0);
+				out.write(raw);
+				getLastCommitId(repo, i).copyRawTo(raw, 0);
+				out.write(raw);
+				out.writeInt(repo.getReleaseCommits(i).size());
+				out.writeInt(r.getClassList().size());
+				for (ProjectClass p : r.getClassList()) {
+					out.writeUTF(p.getPath());
+					out.writeLong(p.getDateAdded().getTime());
+					boolean touched = p.getMetrics().getNumberRevisions() > 0;
+					out.writeBoolean(touched);
+					if (touched) {
+						p.getMetrics().write(out);
+					}
+				}
+				out.writeInt(additions.get(i).size());
+				for (Map.Entry<String, Date> e : additions.get(i).entrySet()) {
+					out.writeUTF(e.getKey());
+					out.writeLong(e.getValue().getTime());
+				}
+			}
+			synchronized (modifiedClasses) {
+				out.writeInt(modifiedClasses.size());
+				for (Map.Entry<ObjectId, List<String>> e : modifiedClasses.entrySet()) {
+					e.getKey().copyRawTo(raw, 0);
+					out.write(raw);
+					out.writeInt(e.getValue().size());
+					for (String path : e.getValue()) {
+						out.writeUTF(path);
+					}
+				}
+			}
+		} catch (IOException e) {
+			Logger.getLogger(MiningCheckpoint.class.getName()).log(Level.WARNING, "Checkpoint not saved", e);
+		}
+	}
+
+
+	/*
+	 * Ritorna l'ultimo commit assegnato alla release in posizione position, zeroId se la release non ha commit
+	 */
+	private static ObjectId getLastCommitId(GitRepo repo, int position) {
+		List<GitCommit> commits = repo.getReleaseCommits(position);
+		return commits.isEmpty() ? ObjectId.zeroId() : commits.get(commits.size() - 1).getId();
+	}
+
+
+	/*
+	 * Stato di una release elaborata
+	 */
+	private static class ReleaseState {
+		private String name;
+		private ObjectId commitId;
+		private ObjectId lastCommitId;
+		private int commitCount;
+		private Map<String, ClassState> classes = new HashMap<>();
+		private Map<String, Date> additions = new LinkedHashMap<>();
+
+		/*
+		 * Ritorna true se la release coincide con quella in posizione position nella repository
+		 */
+		boolean matches(GitRepo repo, int position) {
+			GitRelease r = repo.getReleaseList().get(position);
+			if (!name.equals(r.getName()) || !commitId.equals(r.getCommit().getId())
+					|| !lastCommitId.equals(getLastCommitId(repo, position)) || commitCount != repo.getReleaseCommits(position).size()
+					|| classes.size() != r.getClassList().size()) {
+				return false;
+			}
+			for (ProjectClass p : r.getClassList()) {
+				if (!classes.containsKey(p.getPath())) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+
+	/*
+	 * Stato di una classe in una release: metriche null se la classe non è stata toccata da nessun commit
+	 */
+	private static class ClassState {
+		private long dateAdded;
+		private Metrics metrics;
+	}
+}
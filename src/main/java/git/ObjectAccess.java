@@ -0,0 +1,175 @@
+package git;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.eclipse.jgit.storage.file.WindowCacheStats;
+
+/*
+ * Punto di accesso unico agli oggetti della repository: tutti gli ObjectReader di GitRepo, SnapshotBuilder
+ * (e quindi GitRelease e Metrics) e MetricsEngine vengono creati da newReader(). Alla creazione viene
+ * installato il profilo della cache di JGit scelto in Parameters.OBJECT_CACHE_PROFILE (dimensione delle
+ * finestre dei pack, memory mapping, limite della cache delle basi delle delta), sopra la configurazione
+ * della repository. I reader contano gli oggetti aperti e la loro dimensione, anche se non vengono letti
+ * per intero; per ogni fase del run (beginStage()/endStage()) vengono stampati questi contatori insieme a
+ * hit ratio e pack aperti della WindowCache. La WindowCache è condivisa da tutta la JVM, quindi lo sono anche profilo e statistiche.
+ * La DeltaBaseCache di JGit non espone statistiche.
+ */
+public class ObjectAccess {
+
+	private static Logger logger = Logger.getLogger(ObjectAccess.class.getName());
+
+	/*
+	 * Profili della cache: limite della cache dei pack, dimensione delle finestre, memory mapping, limite
+	 * della cache delle basi delle delta e numero massimo di pack aperti. DEFAULT lascia la configurazione di JGit
+	 */
+	public enum Profile {
+		DEFAULT(0, 0, false, 0, 0),
+		BALANCED(256 * WindowCacheConfig.MB, 64 * WindowCacheConfig.KB, false, 64 * WindowCacheConfig.MB, 256),
+		LARGE(1024 * WindowCacheConfig.MB, 1024 * WindowCacheConfig.KB, true, 256 * WindowCacheConfig.MB, 512);
+
+		private final long packedGitLimit;
+		private final int windowSize;
+		private final boolean mmap;
+		private final int deltaBaseCacheLimit;
+		private final int openFiles;
+
+		Profile(long packedGitLimit, int windowSize, boolean mmap, int deltaBaseCacheLimit, int openFiles) {
+			this.packedGitLimit = packedGitLimit;
+			this.windowSize = windowSize;
+			this.mmap = mmap;
+			this.deltaBaseCacheLimit = deltaBaseCacheLimit;
+			this.openFiles = openFiles;
+		}
+	}
+
+	private Repository repository;
+	private Profile profile;
+	private final LongAdder opened = new LongAdder();
+	private final LongAdder openedBytes = new LongAdder();
+	private String stage;
+	private long stageStart;
+	private long stageOpened;
+	private long stageOpenedBytes;
+	private long stageHits;
+	private long stageMisses;
+
+	public ObjectAccess(Repository repository) {
+		this(repository, Profile.DEFAULT.name());
+	}
+
+	public ObjectAccess(Repository repository, String profile) {
+		this.repository = repository;
+		this.profile = Profile.valueOf(profile);
+		install();
+	}
+
+
+	/*
+	 * Installa il profilo nella WindowCache di JGit
+	 */
+	private void install() {
+		if (profile == Profile.DEFAULT) {
+			return;
+		}
+		WindowCacheConfig config = new WindowCacheConfig().fromConfig(repository.getConfig());
+		config.setPackedGitLimit(profile.packedGitLimit);
+		config.setPackedGitWindowSize(profile.windowSize);
+		config.setPackedGitMMAP(profile.mmap);
+		config.setDeltaBaseCacheLimit(profile.deltaBaseCacheLimit);
+		config.setPackedGitOpenFiles(profile.openFiles);
+		config.install();
+	}
+
+
+	/*
+	 * Crea un ObjectReader che conta gli oggetti aperti e la loro dimensione
+	 */
+	public ObjectReader newReader() {
+		return new CountingReader(repository.newObjectReader());
+	}
+
+
+	/*
+	 * Inizia una fase del run: i contatori stampati da endStage() partono da qui
+	 */
+	public synchronized void beginStage(String name) {
+		WindowCacheStats stats = WindowCacheStats.getStats();
+		this.stage = name;
+		this.stageStart = System.nanoTime();
+		this.stageOpened = opened.sum();
+		this.stageOpenedBytes = openedBytes.sum();
+		this.stageHits = stats.getHitCount();
+		this.stageMisses = stats.getMissCount();
+	}
+
+
+	/*
+	 * [DEBUG] Termina la fase corrente e ne stampa le statistiche di accesso agli oggetti
+	 */
+	public synchronized void endStage() {
+		if (stage == null) {
+			return;
+		}
+		WindowCacheStats stats = WindowCacheStats.getStats();
+		long hits = stats.getHitCount() - stageHits;
+		long misses = stats.getMissCount() - stageMisses;
+		String output = String.format("Object access [%s, %s profile]: %.1f s, %d objects, %.1f MB object bytes opened, "
+				+ "window cache %.1f%% hit ratio (%d misses), %d open packs (%d MB)",
+				stage, profile, (System.nanoTime() - stageStart) / 1e9, opened.sum() - stageOpened,
+				(openedBytes.sum() - stageOpenedBytes) / 1048576.0, hits + misses == 0 ? 0 : 100.0 * hits / (hits + misses),
+				misses, stats.getOpenFileCount(), stats.getOpenByteCount() >> 20);
+		logger.log(Level.INFO, output);
+		this.stage = null;
+	}
+
+
+	public Repository getRepository() {
+		return repository;
+	}
+
+
+	/*
+	 * ObjectReader che delega a quello della repository contando gli oggetti aperti e la loro size
+	 */
+	private class CountingReader extends ObjectReader.Filter {
+		private ObjectReader reader;
+
+		CountingReader(ObjectReader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		protected ObjectReader delegate() {
+			return reader;
+		}
+
+		@Override
+		public ObjectReader newReader() {
+			return new CountingReader(reader.newReader());
+		}
+
+		@Override
+		public ObjectLoader open(AnyObjectId objectId) throws MissingObjectException, IOException {
+			return open(objectId, OBJ_ANY);
+		}
+
+		@Override
+		public ObjectLoader open(AnyObjectId objectId, int typeHint)
+				throws MissingObjectException, IncorrectObjectTypeException, IOException {
+			ObjectLoader loader = reader.open(objectId, typeHint);
+			opened.increment();
+			openedBytes.add(loader.getSize());
+			return loader;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package git;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jgit.internal.storage.file.ObjectDirectory;
+import org.eclipse.jgit.internal.storage.file.Pack;
+import org.eclipse.jgit.lib.ObjectDatabase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+/*
+ * Ordina degli oggetti secondo la loro posizione nei pack file (pack, poi offset nel pack), così che
+ * vengano letti in modo sequenziale: le basi delle delta precedono di norma gli oggetti che le usano e
+ * restano nella cache delle basi di JGit. Gli oggetti loose (o una repository non su file) vengono
+ * messi in coda, nell'ordine degli id.
+ */
+public class PackOrder {
+
+	private static Logger logger = Logger.getLogger(PackOrder.class.getName());
+
+	private PackOrder() {}
+
+
+	/*
+	 * Ordina la lista di oggetti in input nell'ordine dei pack file
+	 */
+	public static void sort(Repository repository, List<ObjectId> objects) {
+		List<Pack> packs = getPacks(repository);
+		Map<ObjectId, long[]> positions = new HashMap<>(objects.size() * 2);
+		for (ObjectId id : objects) {
+			positions.put(id, findPosition(packs, id));
+		}
+		objects.sort(Comparator.comparingLong((ObjectId id) -> positions.get(id)[0])
+				.thenComparingLong(id -> positions.get(id)[1])
+				.thenComparing(Comparator.naturalOrder()));
+	}
+
+
+	/*
+	 * Ritorna (indice del pack, offset) dell'oggetto, (numero di pack, 0) se l'oggetto non è in un pack
+	 */
+	private static long[] findPosition(List<Pack> packs, ObjectId id) {
+		for (int p = 0; p < packs.size(); p++) {
+			try {
+				long offset = packs.get(p).getIndex().findOffset(id);
+				if (offset >= 0) {
+					return new long[] { p, offset };
+				}
+			} catch (IOException e) {
+				logger.log(Level.FINE, "Pack index not readable", e);
+			}
+		}
+		return new long[] { packs.size(), 0 };
+	}
+
+
+	private static List<Pack> getPacks(Repository repository) {
+		ObjectDatabase database = repository.getObjectDatabase();
+		if (!(database instanceof ObjectDirectory)) {
+			return new ArrayList<>();
+		}
+		Collection<Pack> packs = ((ObjectDirectory) database).getPacks();
+		return new ArrayList<>(packs);
+	}
+}
@@ -0,0 +1,214 @@
+package git;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import data.MetricStore;
+import data.ProjectClass;
+
+/*
+ * Spill mode (Parameters.SPILL_MODE): mantiene sullo heap le liste delle classi delle release (con le loro
+ * metriche) entro un budget di memoria. Quando il budget viene superato, le release caricate da più tempo
+ * vengono scritte su file e rilasciate; al successivo GitRelease.getClassList() vengono ricaricate tramite
+ * memory mapping. Le release fissate con pin() (ad esempio quelle in elaborazione nei worker del
+ * MetricsEngine) non vengono mai scaricate. I file valgono soltanto per il run corrente (contengono gli id
+ * dello StringDictionary) e vengono cancellati da close().
+ * Formato (big endian): MAGIC, numero di classi, per ogni classe id del path, data di aggiunta e buggyness,
+ * poi il MetricStore della release (vedi MetricStore.write()).
+ */
+public class ReleaseSpill {
+
+	private static final int MAGIC = 0x53504c4c;	// "SPLL"
+	private static final long CLASS_BYTES = 64;		// Stima dei byte sullo heap di una ProjectClass e del suo riferimento
+	private static final long NO_DATE = Long.MIN_VALUE;
+
+	private String filePrefix;
+	private long budget;
+	private long heapBytes;
+	private Map<GitRelease, Long> loaded;		// Release sullo heap, nell'ordine di caricamento, con i byte stimati
+	private Map<GitRelease, File> files;
+	private Map<GitRelease, Integer> pins;
+	private int spills;
+	private int loads;
+
+	public ReleaseSpill(String filePrefix, long budget) {
+		this.filePrefix = filePrefix;
+		this.budget = budget;
+		this.loaded = new LinkedHashMap<>();
+		this.files = new IdentityHashMap<>();
+		this.pins = new IdentityHashMap<>();
+	}
+
+
+	/*
+	 * Registra la lista delle classi appena impostata sulla release e, se il budget viene superato,
+	 * scarica su disco le release caricate da più tempo
+	 */
+	synchronized void register(GitRelease release) {
+		Long previous = loaded.remove(release);
+		if (previous != null) {
+			heapBytes -= previous;
+		}
+		long bytes = estimateBytes(release.getClassList());
+		loaded.put(release, bytes);
+		heapBytes += bytes;
+		trim(release);
+	}
+
+
+	/*
+	 * Ricarica dal file la lista delle classi della release. Se nel frattempo la lista è stata ricaricata da un
+	 * altro thread ritorna quella, se la release non è mai stata scaricata su disco ritorna null
+	 */
+	synchronized List<ProjectClass> load(GitRelease release) {
+		if (release.isClassListLoaded()) {
+			return release.getClassList();
+		}
+		if (!files.containsKey(release)) {
+			return null;
+		}
+		List<ProjectClass> classList;
+		try (FileChannel channel = FileChannel.open(files.get(release).toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("Invalid spill file for release " + release.getName());
+			}
+			int count = buffer.getInt();
+			classList = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				ProjectClass p = new ProjectClass(buffer.getInt(), release);
+				long dateAdded = buffer.getLong();
+				p.setDateAdded(dateAdded == NO_DATE ? null : new Date(dateAdded));
+				p.setBuggy(buffer.get() != 0);
+				classList.add(p);
+			}
+			MetricStore store = MetricStore.read(buffer);
+			for (int i = 0; i < count; i++) {
+				classList.get(i).moveMetrics(store, i);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Spilled release " + release.getName() + " not loaded", e);
+		}
+		release.restoreClassList(classList);
+		loads++;
+		long bytes = estimateBytes(classList);
+		loaded.put(release, bytes);
+		heapBytes += bytes;
+		trim(release);
+		return classList;
+	}
+
+
+	/*
+	 * Impedisce che la release venga scaricata su disco fino al corrispondente unpin()
+	 */
+	public synchronized void pin(GitRelease release) {
+		pins.merge(release, 1, Integer::sum);
+	}
+
+	public synchronized void unpin(GitRelease release) {
+		pins.computeIfPresent(release, (r, count) -> count == 1 ? null : count - 1);
+		trim(null);
+	}
+
+
+	/*
+	 * Scarica su disco le release caricate da più tempo finché lo heap stimato non rientra nel budget.
+	 * La release keep e quelle fissate con pin() restano sullo heap
+	 */
+	private void trim(GitRelease keep) {
+		Iterator<Map.Entry<GitRelease, Long>> it = loaded.entrySet().iterator();
+		while (heapBytes > budget && it.hasNext()) {
+			Map.Entry<GitRelease, Long> e = it.next();
+			GitRelease release = e.getKey();
+			if (release == keep || pins.containsKey(release)) {
+				continue;
+			}
+			try {
+				write(release);
+			} catch (IOException ex) {
+				Logger.getLogger(ReleaseSpill.class.getName()).log(Level.WARNING, "Release not spilled", ex);
+				return;
+			}
+			release.dropClassList();
+			heapBytes -= e.getValue();
+			it.remove();
+			spills++;
+		}
+	}
+
+
+	/*
+	 * Scrive la lista delle classi della release sul suo file di spill
+	 */
+	private void write(GitRelease release) throws IOException {
+		File file = files.computeIfAbsent(release, r -> new File(filePrefix + files.size() + ".bin"));
+		File tmp = new File(file.getPath() + ".tmp");
+		List<ProjectClass> classList = release.getClassList();
+		MetricStore store = new MetricStore(classList.size());
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(classList.size());
+			for (int i = 0; i < classList.size(); i++) {
+				ProjectClass p = classList.get(i);
+				out.writeInt(p.getPathId());
+				out.writeLong(p.getDateAdded() == null ? NO_DATE : p.getDateAdded().getTime());
+				out.writeBoolean(p.isBuggy());
+				store.copy(p.getMetrics().getStore(), p.getMetrics().getIndex(), i, true);
+			}
+			store.write(out);
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		file.deleteOnExit();
+	}
+
+
+	/*
+	 * Stima dei byte occupati sullo heap dalla lista delle classi e dalle loro metriche
+	 */
+	private static long estimateBytes(List<ProjectClass> classList) {
+		long bytes = CLASS_BYTES * classList.size();
+		if (!classList.isEmpty()) {
+			bytes += classList.get(0).getMetrics().getStore().estimateBytes();
+		}
+		return bytes;
+	}
+
+
+	/*
+	 * Cancella tutti i file di spill
+	 */
+	public synchronized void close() {
+		for (File file : files.values()) {
+			try {
+				Files.deleteIfExists(file.toPath());
+			} catch (IOException e) {
+				Logger.getLogger(ReleaseSpill.class.getName()).log(Level.WARNING, "Spill file not deleted", e);
+			}
+		}
+	}
+
+
+	public synchronized void print() {
+		String output = String.format("Release spill: %d spills, %d loads, %d releases on heap (~%d MB)",
+				spills, loads, loaded.size(), heapBytes >> 20);
+		Logger.getLogger(ReleaseSpill.class.getName()).log(Level.INFO, output);
+	}
+}
@@ -0,0 +1,90 @@
+package git;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/*
+ * RevWalk che assegna ogni commit alla prima release (nell'ordine della lista delle release) il cui tag lo
+ * raggiunge nel grafo dei commit, invece di confrontare le date. Il walk parte da tutti i tag delle release
+ * in ordine topologico: ogni commit viene restituito dopo tutti i suoi figli, quindi la sua release è già
+ * il minimo tra quella del proprio tag e quelle dei figli, e basta propagarla ai parent (vedi next()).
+ * Il costo è un solo passaggio sul grafo, indipendentemente dal numero di release.
+ */
+public class ReleaseWalk extends RevWalk {
+
+	public static final int NONE = Integer.MAX_VALUE;
+
+	/*
+	 * RevCommit con la posizione della release assegnata
+	 */
+	private static class ReleaseCommit extends RevCommit {
+		private static final long serialVersionUID = 1L;
+
+		int release = NONE;
+
+		ReleaseCommit(AnyObjectId id) {
+			super(id);
+		}
+	}
+
+	public ReleaseWalk(ObjectReader reader) {
+		super(reader);
+		sort(RevSort.TOPO);
+	}
+
+
+	/*
+	 * Marca come punti di partenza i tag delle release in input. Come nel range del LogCommand, la storia
+	 * raggiungibile dalla release oldest viene esclusa dal walk
+	 */
+	public void markReleases(List<GitRelease> releases, GitRelease oldest) throws IOException {
+		for (int i = 0; i < releases.size(); i++) {
+			ReleaseCommit c = (ReleaseCommit) parseCommit(releases.get(i).getCommit().getId());
+			c.release = Math.min(c.release, i);
+			if (releases.get(i) == oldest) {
+				markUninteresting(c);
+			}
+			else {
+				markStart(c);
+			}
+		}
+	}
+
+
+	/*
+	 * Ritorna il prossimo commit e propaga la sua release ai parent
+	 */
+	@Override
+	public RevCommit next() throws IOException {
+		RevCommit c = super.next();
+		if (c != null) {
+			int release = getRelease(c);
+			for (RevCommit p : c.getParents()) {
+				ReleaseCommit parent = (ReleaseCommit) p;
+				if (release < parent.release) {
+					parent.release = release;
+				}
+			}
+		}
+		return c;
+	}
+
+
+	/*
+	 * Ritorna la posizione della release assegnata al commit, NONE se nessun tag lo raggiunge
+	 */
+	public static int getRelease(RevCommit commit) {
+		return ((ReleaseCommit) commit).release;
+	}
+
+	@Override
+	protected RevCommit createCommit(AnyObjectId id) {
+		return new ReleaseCommit(id);
+	}
+}
@@ -0,0 +1,382 @@
+package git;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+
+import data.StringDictionary;
+import tools.Parameters;
+
+/*
+ * Cache dei rename rilevati dai diff dei commit (Parameters.RENAME_CACHE). Il RenameDetector confronta il
+ * contenuto di ogni file aggiunto con ogni file cancellato, quindi sui commit di refactoring il costo è
+ * quadratico. Per ogni diff con delle ADD e delle DELETE viene salvato il risultato del RenameDetector
+ * (RENAME e COPY con i path e lo score, anche quando non ci sono rename), con chiave il digest delle
+ * DiffEntry in input e di Parameters.RENAME_LIMIT: quando lo stesso diff viene calcolato di nuovo (ad
+ * esempio dopo che il ChangeLog è stato scartato) il risultato viene ricostruito senza confrontare i
+ * contenuti. L'accoppiamento resta quindi sempre quello deciso dal RenameDetector, con lo stesso limite.
+ * Contiene inoltre la lineage dei path: per ogni commit con dei rename, le coppie (path vecchio, path nuovo),
+ * così che una classe possa essere seguita anche per i commit letti dal ChangeLog.
+ * Risultati e lineage non dipendono dalle altre impostazioni del diff, quindi il file sopravvive anche
+ * quando il ChangeLog viene scartato.
+ */
+public class RenameCache {
+
+	private static final int MAGIC = 0x524e4d43;	// "RNMC"
+	private static final int VERSION = 2;
+	private static final int RECORD_SIZE = 4;		// Tipo, id del path vecchio, id del path nuovo, score
+
+	// Stesso ordinamento del RenameDetector: per path (il vecchio per le DELETE), a parità DELETE, ADD e le altre
+	private static final Comparator<DiffEntry> DIFF_COMPARATOR = Comparator
+			.comparing((DiffEntry e) -> e.getChangeType() == ChangeType.DELETE ? e.getOldPath() : e.getNewPath())
+			.thenComparingInt(RenameCache::sortOf);
+
+	private final Map<ObjectId, int[]> results;		// Digest delle DiffEntry -> RENAME e COPY, a gruppi di RECORD_SIZE
+	private final Map<ObjectId, int[]> lineage;		// Commit -> id dei path vecchio e nuovo, a coppie
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private volatile boolean modified;
+
+	public RenameCache() {
+		this.results = new HashMap<>();
+		this.lineage = new HashMap<>();
+	}
+
+
+	/*
+	 * Rileva i rename tra le DiffEntry di un commit (calcolate senza rilevamento dei rename). Se il risultato
+	 * del RenameDetector per le stesse DiffEntry è già noto viene ricostruito, altrimenti viene calcolato dal
+	 * detector in input (creato con l'ObjectReader da usare) e salvato. Ritorna le DiffEntry nello stesso
+	 * ordine del RenameDetector e registra la lineage dei path del commit
+	 */
+	public List<DiffEntry> detect(AnyObjectId commitId, List<DiffEntry> entries, RenameDetector detector) throws IOException {
+		ObjectId key = isMemoizable(entries) ? digest(entries) : null;
+		int[] records = null;
+		if (key != null) {
+			synchronized (results) {
+				records = results.get(key);
+			}
+		}
+		List<DiffEntry> result = records == null ? null : rebuild(entries, records);
+		if (result != null) {
+			hits.incrementAndGet();
+		}
+		else {
+			detector.reset();
+			detector.setRenameLimit(Parameters.RENAME_LIMIT);
+			detector.addAll(entries);
+			result = detector.compute();
+			if (key != null) {
+				misses.incrementAndGet();
+				putResult(key, result);
+			}
+		}
+		recordLineage(commitId, result);
+		return result;
+	}
+
+
+	/*
+	 * Il RenameDetector accoppia soltanto ADD e DELETE: i diff che non le hanno entrambe sono economici e non
+	 * vengono salvati. Sono esclusi anche i MODIFY che cambiano il tipo del file, che il detector divide in
+	 * una DELETE ed una ADD sullo stesso path
+	 */
+	private static boolean isMemoizable(List<DiffEntry> entries) {
+		boolean added = false;
+		boolean deleted = false;
+		for (DiffEntry e : entries) {
+			switch (e.getChangeType()) {
+			case ADD:
+				added = true;
+				break;
+			case DELETE:
+				deleted = true;
+				break;
+			case MODIFY:
+				if ((e.getOldMode().getBits() & FileMode.TYPE_MASK) != (e.getNewMode().getBits() & FileMode.TYPE_MASK)) {
+					return false;
+				}
+				break;
+			default:
+				return false;
+			}
+		}
+		return added && deleted;
+	}
+
+
+	/*
+	 * Digest delle DiffEntry (tipo, path, modi e blob) e del limite dei rename
+	 */
+	private static ObjectId digest(List<DiffEntry> entries) {
+		MessageDigest md = Constants.newMessageDigest();
+		StringBuilder sb = new StringBuilder();
+		sb.append(Parameters.RENAME_LIMIT).append('\n');
+		for (DiffEntry e : entries) {
+			sb.append(e.getChangeType().ordinal()).append(' ')
+				.append(e.getOldPath()).append(' ').append(e.getOldMode().getBits()).append(' ').append(e.getOldId().name()).append(' ')
+				.append(e.getNewPath()).append(' ').append(e.getNewMode().getBits()).append(' ').append(e.getNewId().name()).append('\n');
+		}
+		return ObjectId.fromRaw(md.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+	}
+
+
+	/*
+	 * Ricostruisce il risultato del RenameDetector dalle DiffEntry in input e dai RENAME e COPY salvati.
+	 * Ritorna null se un path salvato non corrisponde più ad una DELETE o ADD del diff
+	 */
+	private static List<DiffEntry> rebuild(List<DiffEntry> entries, int[] records) {
+		Map<String, DiffEntry> deleted = new HashMap<>();
+		Map<String, DiffEntry> added = new HashMap<>();
+		for (DiffEntry e : entries) {
+			if (e.getChangeType() == ChangeType.DELETE) {
+				deleted.put(e.getOldPath(), e);
+			}
+			else if (e.getChangeType() == ChangeType.ADD) {
+				added.put(e.getNewPath(), e);
+			}
+		}
+		List<DiffEntry> result = new ArrayList<>();
+		Set<DiffEntry> used = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (int i = 0; i < records.length; i += RECORD_SIZE) {
+			DiffEntry source = deleted.get(StringDictionary.PATHS.get(records[i + 1]));
+			DiffEntry target = added.get(StringDictionary.PATHS.get(records[i + 2]));
+			if (source == null || target == null) {
+				return null;
+			}
+			result.add(new RenameEntry(ChangeType.values()[records[i]], source, target, records[i + 3]));
+			used.add(source);
+			used.add(target);
+		}
+		for (DiffEntry e : entries) {
+			if (!used.contains(e)) {
+				result.add(e);
+			}
+		}
+		result.sort(DIFF_COMPARATOR);
+		return result;
+	}
+
+
+	private void putResult(ObjectId key, List<DiffEntry> result) {
+		List<Integer> records = new ArrayList<>();
+		for (DiffEntry e : result) {
+			if (e.getChangeType() == ChangeType.RENAME || e.getChangeType() == ChangeType.COPY) {
+				records.add(e.getChangeType().ordinal());
+				records.add(StringDictionary.PATHS.getId(e.getOldPath()));
+				records.add(StringDictionary.PATHS.getId(e.getNewPath()));
+				records.add(e.getScore());
+			}
+		}
+		synchronized (results) {
+			results.put(key, records.stream().mapToInt(Integer::intValue).toArray());
+			modified = true;
+		}
+	}
+
+
+	/*
+	 * Registra le coppie (path vecchio, path nuovo) dei rename del commit
+	 */
+	private void recordLineage(AnyObjectId commitId, List<DiffEntry> entries) {
+		List<Integer> paths = new ArrayList<>();
+		for (DiffEntry e : entries) {
+			if (e.getChangeType() == ChangeType.RENAME) {
+				paths.add(StringDictionary.PATHS.getId(e.getOldPath()));
+				paths.add(StringDictionary.PATHS.getId(e.getNewPath()));
+			}
+		}
+		synchronized (lineage) {
+			if (paths.isEmpty()) {
+				modified |= lineage.remove(commitId) != null;
+			}
+			else {
+				lineage.put(commitId.copy(), paths.stream().mapToInt(Integer::intValue).toArray());
+				modified = true;
+			}
+		}
+	}
+
+
+	/*
+	 * Ritorna true se la lineage dei path del commit è nota
+	 */
+	public boolean hasLineage(AnyObjectId commitId) {
+		synchronized (lineage) {
+			return lineage.containsKey(commitId);
+		}
+	}
+
+
+	/*
+	 * Ritorna l'id del vecchio path della classe rinominata dal commit nel path newPathId,
+	 * StringDictionary.NOT_FOUND se il commit non l'ha rinominata
+	 */
+	public int getOldPathId(AnyObjectId commitId, int newPathId) {
+		int[] paths;
+		synchronized (lineage) {
+			paths = lineage.get(commitId);
+		}
+		if (paths != null) {
+			for (int i = 0; i < paths.length; i += 2) {
+				if (paths[i + 1] == newPathId) {
+					return paths[i];
+				}
+			}
+		}
+		return StringDictionary.NOT_FOUND;
+	}
+
+
+	private static int sortOf(DiffEntry e) {
+		switch (e.getChangeType()) {
+		case DELETE:
+			return 1;
+		case ADD:
+			return 2;
+		default:
+			return 10;
+		}
+	}
+
+
+	/*
+	 * Carica la cache da file. Se il file non esiste o ha un formato diverso ritorna una cache vuota
+	 */
+	public static RenameCache load(String fileName) {
+		RenameCache cache = new RenameCache();
+		File file = new File(fileName);
+		if (!file.exists()) {
+			return cache;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return cache;
+			}
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			int resultCount = in.readInt();
+			for (int i = 0; i < resultCount; i++) {
+				in.readFully(raw);
+				int[] records = new int[in.readInt() * RECORD_SIZE];
+				for (int j = 0; j < records.length; j += RECORD_SIZE) {
+					records[j] = in.readByte();
+					records[j + 1] = StringDictionary.PATHS.getId(in.readUTF());
+					records[j + 2] = StringDictionary.PATHS.getId(in.readUTF());
+					records[j + 3] = in.readInt();
+				}
+				cache.results.put(ObjectId.fromRaw(raw), records);
+			}
+			int commitCount = in.readInt();
+			for (int i = 0; i < commitCount; i++) {
+				in.readFully(raw);
+				int[] paths = new int[in.readInt() * 2];
+				for (int j = 0; j < paths.length; j++) {
+					paths[j] = StringDictionary.PATHS.getId(in.readUTF());
+				}
+				cache.lineage.put(ObjectId.fromRaw(raw), paths);
+			}
+		} catch (IOException e) {
+			Logger.getLogger(RenameCache.class.getName()).log(Level.WARNING, "Rename cache not loaded", e);
+			return new RenameCache();
+		}
+		cache.modified = false;
+		return cache;
+	}
+
+
+	/*
+	 * Salva su file risultati e lineage dei path, se sono cambiate dal caricamento
+	 */
+	public synchronized void save(String fileName) {
+		if (!modified) {
+			return;
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			synchronized (results) {
+				out.writeInt(results.size());
+				for (Map.Entry<ObjectId, int[]> e : results.entrySet()) {
+					int[] records = e.getValue();
+					e.getKey().copyRawTo(raw, 0);
+					out.write(raw);
+					out.writeInt(records.length / RECORD_SIZE);
+					for (int j = 0; j < records.length; j += RECORD_SIZE) {
+						out.writeByte(records[j]);
+						out.writeUTF(StringDictionary.PATHS.get(records[j + 1]));
+						out.writeUTF(StringDictionary.PATHS.get(records[j + 2]));
+						out.writeInt(records[j + 3]);
+					}
+				}
+			}
+			synchronized (lineage) {
+				out.writeInt(lineage.size());
+				for (Map.Entry<ObjectId, int[]> e : lineage.entrySet()) {
+					e.getKey().copyRawTo(raw, 0);
+					out.write(raw);
+					out.writeInt(e.getValue().length / 2);
+					for (int pathId : e.getValue()) {
+						out.writeUTF(StringDictionary.PATHS.get(pathId));
+					}
+				}
+			}
+		} catch (IOException e) {
+			Logger.getLogger(RenameCache.class.getName()).log(Level.WARNING, "Rename cache not saved", e);
+		}
+	}
+
+
+	/*
+	 * [DEBUG] Stampa i diff il cui risultato è stato riusato dalla cache e quelli calcolati dal RenameDetector
+	 */
+	public void print() {
+		String output = String.format("Rename cache: %d diffs reused, %d computed, %d commits in path lineage",
+				hits.get(), misses.get(), lineage.size());
+		Logger.getLogger(RenameCache.class.getName()).log(Level.INFO, output);
+	}
+
+
+	/*
+	 * DiffEntry di tipo RENAME o COPY ricostruita dalla cache (DiffEntry non ha un costruttore pubblico)
+	 */
+	private static class RenameEntry extends DiffEntry {
+
+		RenameEntry(ChangeType changeType, DiffEntry deleted, DiffEntry added, int score) {
+			this.changeType = changeType;
+			this.oldPath = deleted.getOldPath();
+			this.oldMode = deleted.getOldMode();
+			this.oldId = deleted.getOldId();
+			this.newPath = added.getNewPath();
+			this.newMode = added.getNewMode();
+			this.newId = added.getNewId();
+			this.score = score;
+		}
+	}
+}
@@ -0,0 +1,458 @@
+package git;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import data.Metrics;
+import data.ProjectClass;
+import data.SizeCache;
+import tools.Parameters;
+
+/*
+ * Calcola in parallelo la lista delle classi (snapshot) delle release. Il lavoro viene diviso
+ * per release e, all'interno di ogni release, per sottoalbero di primo livello. Ogni thread usa
+ * un proprio ObjectReader; i risultati vengono riassemblati nell'ordine del TreeWalk ricorsivo.
+ * La size delle classi passa per la SizeCache condivisa tra tutte le release.
+ *
+ * In modalità incrementale (Parameters.INCREMENTAL_SNAPSHOTS) soltanto la prima release viene visitata
+ * per intero: ogni release successiva viene ricavata dalla precedente confrontando i due alberi,
+ * saltando i sottoalberi identici e rileggendo soltanto i file Java aggiunti o modificati.
+ *
+ * Con Parameters.PACK_ORDER_PREFETCH i task raccolgono soltanto i blob delle classi: le size vengono
+ * calcolate dopo la visita degli alberi, una volta per blob, leggendo i blob nell'ordine dei pack file
+ * (vedi PackOrder) invece che nell'ordine degli alberi, che salta da un punto all'altro dei pack.
+ */
+public class SnapshotBuilder {
+	
+	private ObjectAccess objects;
+	private SizeCache sizeCache;
+	private int threads;
+	private ConcurrentLinkedQueue<PendingSize> pending;		// Classi in attesa della size, null senza prefetch
+	
+	public SnapshotBuilder(ObjectAccess objects, SizeCache sizeCache) {
+		this(objects, sizeCache, Parameters.THREADS);
+	}
+	
+	public SnapshotBuilder(ObjectAccess objects, SizeCache sizeCache, int threads) {
+		this.objects = objects;
+		this.sizeCache = sizeCache;
+		this.threads = Math.max(1, threads);
+		if (Parameters.PACK_ORDER_PREFETCH) {
+			this.pending = new ConcurrentLinkedQueue<>();
+		}
+	}
+	
+	
+	/*
+	 * Calcola ed imposta la lista delle classi per tutte le release in input
+	 */
+	public void build(List<GitRelease> releases) throws IOException {
+		if (Parameters.INCREMENTAL_SNAPSHOTS && releases.size() > 1) {
+			buildIncremental(releases);
+		}
+		else {
+			buildFull(releases);
+		}
+	}
+
+
+	/*
+	 * Visita per intero l'albero di ogni release in input
+	 */
+	private void buildFull(List<GitRelease> releases) throws IOException {
+		List<SnapshotTask> tasks = new ArrayList<>();
+		int[] firstTask = new int[releases.size() + 1];
+		
+		// Divisione del lavoro: un task per ogni sottoalbero (o file) nella root di ogni release
+		try (ObjectReader reader = objects.newReader(); RevWalk revWalk = new RevWalk(reader)) {
+			for (int i = 0; i < releases.size(); i++) {
+				firstTask[i] = tasks.size();
+				GitRelease release = releases.get(i);
+				addRootTasks(reader, release, getTree(revWalk, release), tasks);
+			}
+			firstTask[releases.size()] = tasks.size();
+		}
+		
+		List<List<ProjectClass>> results = runTasks(tasks);
+		resolveSizes();
+		
+		// Riassemblo le liste rispettando l'ordine dei task, uguale a quello del TreeWalk ricorsivo
+		for (int i = 0; i < releases.size(); i++) {
+			List<ProjectClass> classList = new ArrayList<>();
+			for (int t = firstTask[i]; t < firstTask[i + 1]; t++) {
+				classList.addAll(results.get(t));
+			}
+			releases.get(i).setClassList(classList);
+		}
+	}
+
+
+	/*
+	 * Visita per intero soltanto la prima release. Per le altre calcola in parallelo le differenze
+	 * rispetto alla release precedente e poi applica le differenze in sequenza.
+	 */
+	private void buildIncremental(List<GitRelease> releases) throws IOException {
+		buildFull(releases.subList(0, 1));
+
+		List<DiffTask> tasks = new ArrayList<>();
+		try (ObjectReader reader = objects.newReader(); RevWalk revWalk = new RevWalk(reader)) {
+			ObjectId previousTree = getTree(revWalk, releases.get(0));
+			for (int i = 1; i < releases.size(); i++) {
+				ObjectId tree = getTree(revWalk, releases.get(i));
+				tasks.add(new DiffTask(releases.get(i), previousTree, tree));
+				previousTree = tree;
+			}
+		}
+
+		List<List<ClassChange>> results = runTasks(tasks);
+		resolveSizes();
+
+		for (int i = 1; i < releases.size(); i++) {
+			List<ProjectClass> previous = releases.get(i - 1).getClassList();
+			releases.get(i).setClassList(applyChanges(releases.get(i), previous, results.get(i - 1)));
+		}
+	}
+
+
+	/*
+	 * Costruisce la lista delle classi di una release partendo da quella della release precedente.
+	 * Entrambe le liste sono nell'ordine del TreeWalk, quindi basta un merge: le classi non toccate
+	 * vengono copiate mantenendo la size, quelle cancellate vengono scartate.
+	 */
+	private static List<ProjectClass> applyChanges(GitRelease release, List<ProjectClass> previous, List<ClassChange> changes) {
+		List<ProjectClass> classList = new ArrayList<>(previous.size() + changes.size());
+		int p = 0;
+		int c = 0;
+		while (p < previous.size() || c < changes.size()) {
+			int cmp;
+			if (p == previous.size()) {
+				cmp = 1;
+			}
+			else if (c == changes.size()) {
+				cmp = -1;
+			}
+			else {
+				cmp = comparePaths(previous.get(p).getPath(), changes.get(c).path);
+			}
+
+			if (cmp < 0) {
+				classList.add(copyClass(previous.get(p), release));
+				p++;
+			}
+			else {
+				if (changes.get(c).projectClass != null) {
+					classList.add(changes.get(c).projectClass);
+				}
+				if (cmp == 0) {
+					p++;
+				}
+				c++;
+			}
+		}
+		return classList;
+	}
+
+
+	/*
+	 * Copia una classe non modificata nella release successiva. La copia punta alle metriche della classe
+	 * originale, che contengono soltanto la size, finché GitRelease.setClassList() non la sposta nello store
+	 * della nuova release
+	 */
+	private static ProjectClass copyClass(ProjectClass projectClass, GitRelease release) {
+		ProjectClass copy = new ProjectClass(projectClass.getPathId(), release);
+		copy.setMetrics(projectClass.getMetrics());
+		return copy;
+	}
+
+
+	/*
+	 * Confronta due path nell'ordine del TreeWalk ricorsivo (ordine dei byte UTF-8, cioè dei code point)
+	 */
+	private static int comparePaths(String a, String b) {
+		int i = 0;
+		int j = 0;
+		while (i < a.length() && j < b.length()) {
+			int ca = a.codePointAt(i);
+			int cb = b.codePointAt(j);
+			if (ca != cb) {
+				return ca < cb ? -1 : 1;
+			}
+			i += Character.charCount(ca);
+			j += Character.charCount(cb);
+		}
+		return Integer.compare(a.length() - i, b.length() - j);
+	}
+
+
+	/*
+	 * Ritorna l'albero del commit della release
+	 */
+	private static ObjectId getTree(RevWalk revWalk, GitRelease release) throws IOException {
+		return revWalk.parseCommit(release.getCommit().getId()).getTree();
+	}
+	
+	
+	/*
+	 * Aggiunge un task per ogni entry della root della release
+	 */
+	private void addRootTasks(ObjectReader reader, GitRelease release, ObjectId treeId, List<SnapshotTask> tasks) throws IOException {
+		try (TreeWalk treeWalk = new TreeWalk(reader)) {
+			treeWalk.reset(treeId);
+			treeWalk.setRecursive(false);
+			while (treeWalk.next()) {
+				boolean isTree = treeWalk.getFileMode(0) == FileMode.TREE;
+				tasks.add(new SnapshotTask(release, treeWalk.getPathString(), treeWalk.getObjectId(0), isTree));
+			}
+		}
+	}
+	
+	
+	/*
+	 * Esegue i task su un pool di thread. Ogni worker apre un solo ObjectReader e preleva i task
+	 * da un indice condiviso; il risultato di ogni task viene salvato nella sua posizione.
+	 */
+	private <T> List<T> runTasks(List<? extends Task<T>> tasks) throws IOException {
+		List<T> results = new ArrayList<>();
+		for (int i = 0; i < tasks.size(); i++) {
+			results.add(null);
+		}
+		
+		int workers = Math.min(threads, Math.max(1, tasks.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		AtomicInteger next = new AtomicInteger();
+		List<Future<Void>> futures = new ArrayList<>();
+		
+		for (int w = 0; w < workers; w++) {
+			futures.add(executor.submit(() -> {
+				try (ObjectReader reader = objects.newReader()) {
+					int t;
+					while ((t = next.getAndIncrement()) < tasks.size()) {
+						T result = tasks.get(t).run(reader);
+						synchronized (results) {
+							results.set(t, result);
+						}
+					}
+				}
+				return null;
+			}));
+		}
+		
+		try {
+			for (Future<Void> f : futures) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return results;
+	}
+	
+	
+	/*
+	 * Crea la ProjectClass relativa al path ed alla size del blob. Con il prefetch la size viene
+	 * impostata dopo, da resolveSizes()
+	 */
+	private ProjectClass createClass(GitRelease release, String classPath, ObjectId objectId, ObjectReader reader) throws IOException {
+		ProjectClass projectClass = new ProjectClass(classPath, release);
+		
+		// Calcolo e setto la size della classe
+		Metrics metrics = new Metrics();
+		if (pending != null) {
+			pending.add(new PendingSize(metrics, objectId.copy()));
+		}
+		else {
+			metrics.calculateSize(objectId, reader, sizeCache);
+		}
+		projectClass.setMetrics(metrics);
+		return projectClass;
+	}
+	
+	
+	/*
+	 * Calcola la size delle classi raccolte dai task: ogni blob viene letto una sola volta, nell'ordine dei
+	 * pack file. I blob vengono divisi in blocchi contigui, così che ogni worker legga in sequenza una
+	 * porzione dei pack
+	 */
+	private void resolveSizes() throws IOException {
+		if (pending == null || pending.isEmpty()) {
+			return;
+		}
+		Map<ObjectId, List<Metrics>> classes = new HashMap<>();
+		for (PendingSize p; (p = pending.poll()) != null;) {
+			classes.computeIfAbsent(p.blobId, id -> new ArrayList<>()).add(p.metrics);
+		}
+		List<ObjectId> blobs = new ArrayList<>(classes.keySet());
+		PackOrder.sort(objects.getRepository(), blobs);
+
+		List<SizeTask> tasks = new ArrayList<>();
+		int chunk = Math.max(1, (blobs.size() + threads * 4 - 1) / (threads * 4));
+		for (int from = 0; from < blobs.size(); from += chunk) {
+			tasks.add(new SizeTask(blobs.subList(from, Math.min(blobs.size(), from + chunk))));
+		}
+		List<int[]> sizes = runTasks(tasks);
+		for (int t = 0; t < tasks.size(); t++) {
+			List<ObjectId> taskBlobs = tasks.get(t).blobs;
+			for (int i = 0; i < taskBlobs.size(); i++) {
+				for (Metrics m : classes.get(taskBlobs.get(i))) {
+					m.setSize(sizes.get(t)[i]);
+				}
+			}
+		}
+	}
+
+
+	private interface Task<T> {
+		T run(ObjectReader reader) throws IOException;
+	}
+
+
+	/*
+	 * Unità di lavoro: un sottoalbero di primo livello (visitato ricorsivamente) oppure un file nella root
+	 */
+	private class SnapshotTask implements Task<List<ProjectClass>> {
+		private GitRelease release;
+		private String path;
+		private ObjectId objectId;
+		private boolean tree;
+		
+		SnapshotTask(GitRelease release, String path, ObjectId objectId, boolean tree) {
+			this.release = release;
+			this.path = path;
+			this.objectId = objectId;
+			this.tree = tree;
+		}
+		
+		@Override
+		public List<ProjectClass> run(ObjectReader reader) throws IOException {
+			List<ProjectClass> classes = new ArrayList<>();
+			if (!tree) {
+				if (path.contains(Parameters.FILTER_FILE_TYPE)) {
+					classes.add(createClass(release, path, objectId, reader));
+				}
+				return classes;
+			}
+			
+			try (TreeWalk treeWalk = new TreeWalk(reader)) {
+				treeWalk.reset(objectId);
+				treeWalk.setRecursive(true);
+				while (treeWalk.next()) {
+					String classPath = path + "/" + treeWalk.getPathString();
+					if (classPath.contains(Parameters.FILTER_FILE_TYPE)) {
+						classes.add(createClass(release, classPath, treeWalk.getObjectId(0), reader));
+					}
+				}
+			}
+			return classes;
+		}
+	}
+
+
+	/*
+	 * Unità di lavoro della modalità incrementale: confronta l'albero di una release con quello della
+	 * precedente e ritorna, nell'ordine del TreeWalk, i file Java aggiunti, modificati o cancellati
+	 */
+	private class DiffTask implements Task<List<ClassChange>> {
+		private GitRelease release;
+		private ObjectId previousTree;
+		private ObjectId tree;
+
+		DiffTask(GitRelease release, ObjectId previousTree, ObjectId tree) {
+			this.release = release;
+			this.previousTree = previousTree;
+			this.tree = tree;
+		}
+
+		@Override
+		public List<ClassChange> run(ObjectReader reader) throws IOException {
+			List<ClassChange> changes = new ArrayList<>();
+			try (TreeWalk treeWalk = new TreeWalk(reader)) {
+				treeWalk.addTree(previousTree);
+				treeWalk.addTree(tree);
+				treeWalk.setRecursive(true);
+				treeWalk.setFilter(TreeFilter.ANY_DIFF);
+				while (treeWalk.next()) {
+					String classPath = treeWalk.getPathString();
+					if (!classPath.contains(Parameters.FILTER_FILE_TYPE)) {
+						continue;
+					}
+					ProjectClass projectClass = null;
+					if (treeWalk.getFileMode(1) != FileMode.MISSING) {
+						projectClass = createClass(release, classPath, treeWalk.getObjectId(1), reader);
+					}
+					changes.add(new ClassChange(classPath, projectClass));
+				}
+			}
+			return changes;
+		}
+	}
+
+
+	/*
+	 * Unità di lavoro del prefetch: calcola in ordine la size di un blocco contiguo di blob
+	 */
+	private class SizeTask implements Task<int[]> {
+		private List<ObjectId> blobs;
+
+		SizeTask(List<ObjectId> blobs) {
+			this.blobs = blobs;
+		}
+
+		@Override
+		public int[] run(ObjectReader reader) throws IOException {
+			int[] sizes = new int[blobs.size()];
+			for (int i = 0; i < sizes.length; i++) {
+				sizes[i] = sizeCache == null ? Metrics.countSize(blobs.get(i), reader) : sizeCache.getSize(blobs.get(i), reader);
+			}
+			return sizes;
+		}
+	}
+
+
+	/*
+	 * Classe creata da un task in attesa della size del suo blob
+	 */
+	private static class PendingSize {
+		private Metrics metrics;
+		private ObjectId blobId;
+
+		PendingSize(Metrics metrics, ObjectId blobId) {
+			this.metrics = metrics;
+			this.blobId = blobId;
+		}
+	}
+
+
+	/*
+	 * Differenza su un path tra due release: projectClass è null se il file è stato cancellato
+	 */
+	private static class ClassChange {
+		private String path;
+		private ProjectClass projectClass;
+
+		ClassChange(String path, ProjectClass projectClass) {
+			this.path = path;
+			this.projectClass = projectClass;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package git;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Indice dai ticket Jira ai commit Git che li citano nel messaggio. Ogni messaggio viene letto una
+ * sola volta ed i ticket vengono riconosciuti come chiavi intere (es. BOOKKEEPER-1 non viene trovato
+ * dentro BOOKKEEPER-123).
+ */
+public class TicketIndex {
+	
+	// Chiave Jira: PROGETTO-NUMERO, non preceduta né seguita da lettere, cifre o '_'
+	private static final Pattern TICKET_KEY = Pattern.compile("(?<![A-Za-z0-9_])[A-Z][A-Z0-9_]*-[0-9]+(?![A-Za-z0-9_])");
+	
+	private Map<String, List<GitCommit>> index;
+	
+	public TicketIndex(List<GitCommit> commits) {
+		this.index = new HashMap<>();
+		for (GitCommit c : commits) {
+			for (String key : c.getTicketKeys()) {
+				List<GitCommit> keyCommits = index.computeIfAbsent(key, k -> new ArrayList<>());
+				if (keyCommits.isEmpty() || keyCommits.get(keyCommits.size() - 1) != c) {
+					keyCommits.add(c);
+				}
+			}
+		}
+	}
+	
+	
+	/*
+	 * Estrae dal messaggio di un commit tutte le chiavi dei ticket Jira, senza duplicati
+	 */
+	public static List<String> extractTicketKeys(String message) {
+		List<String> keys = new ArrayList<>();
+		if (message == null) {
+			return keys;
+		}
+		Matcher matcher = TICKET_KEY.matcher(message);
+		while (matcher.find()) {
+			String key = matcher.group();
+			if (!keys.contains(key)) {
+				keys.add(key);
+			}
+		}
+		return keys;
+	}
+	
+	
+	/*
+	 * Ritorna i commit che citano il ticket, nell'ordine della lista di commit in input
+	 */
+	public List<GitCommit> getCommits(String ticketName) {
+		List<GitCommit> commits = index.get(ticketName);
+		return commits == null ? new ArrayList<>() : commits;
+	}
+	
+	
+	/*
+	 * Ritorna il primo commit che cita il ticket, null se nessun commit lo cita
+	 */
+	public GitCommit getFirstCommit(String ticketName) {
+		List<GitCommit> commits = index.get(ticketName);
+		return commits == null ? null : commits.get(0);
+	}
+}
@@ -0,0 +1,118 @@
+package tools;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import data.MetricWindows;
+import data.ProjectClass;
+import git.GitRelease;
+import git.GitRepo;
+
+/*
+ * Scrittura in streaming del dataset, del CSV per Weka e (con Parameters.METRIC_WINDOWS) delle varianti
+ * cumulativa e su finestra mobile. Le righe di una release vengono scritte appena la release diventa
+ * definitiva (vedi GitRepo.setMetrics(Consumer)) e i file vengono svuotati su disco ad ogni release, così che
+ * in memoria non resti mai la lista di tutte le classi e i file possano essere letti prima della fine del run.
+ */
+public class CSVStreamWriter implements Consumer<GitRelease>, Closeable {
+
+	private static Logger logger = Logger.getLogger(CSVStreamWriter.class.getName());
+
+	private GitRepo repo;
+	private Writer dataset;
+	private Writer weka;
+	private Writer cumulative;		// null se Parameters.METRIC_WINDOWS è disabilitato
+	private Writer sliding;
+	private int releases;
+	private int rows;
+	private IOException failure;	// Primo errore di scrittura, rilanciato da close()
+
+	public CSVStreamWriter(GitRepo repo, String projectName) throws IOException {
+		this.repo = repo;
+		this.dataset = open(projectName, Parameters.DATASET_CSV, CSVWriter.CLASS_HEADER.replace(",", ";"));
+		this.weka = open(projectName, Parameters.WEKA_CSV, CSVWriter.CLASS_HEADER);
+		if (Parameters.METRIC_WINDOWS) {
+			this.cumulative = open(projectName, Parameters.CUMULATIVE_CSV, CSVWriter.WINDOW_HEADER);
+			this.sliding = open(projectName, Parameters.SLIDING_CSV, CSVWriter.WINDOW_HEADER);
+		}
+	}
+
+
+	/*
+	 * Scrive le righe di tutte le classi della release, con l'AGE già calcolata. Dopo un errore di scrittura
+	 * le release successive vengono ignorate e l'errore viene rilanciato da close()
+	 */
+	@Override
+	public void accept(GitRelease release) {
+		if (failure != null) {
+			return;
+		}
+		MetricWindows windows = repo.getMetricWindows();
+		try {
+			for (ProjectClass c : release.getClassList()) {
+				dataset.append(CSVWriter.getClassRow(c, ";"));
+				weka.append(CSVWriter.getClassRow(c, ","));
+				if (cumulative != null && windows != null) {
+					cumulative.append(CSVWriter.getWindowRow(c, windows, 0));
+					sliding.append(CSVWriter.getWindowRow(c, windows, Parameters.SLIDING_WINDOW_RELEASES));
+				}
+				rows++;
+			}
+			flush();
+			releases++;
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, Parameters.CSV_ERROR, e);
+			failure = e;
+		}
+	}
+
+
+	/*
+	 * Chiude i file e rilancia il primo errore di scrittura, così che un dataset incompleto non venga
+	 * scambiato per uno completo
+	 */
+	@Override
+	public void close() throws IOException {
+		for (Writer w : new Writer[] {dataset, weka, cumulative, sliding}) {
+			if (w != null) {
+				try {
+					w.close();
+				} catch (IOException e) {
+					if (failure == null) {
+						failure = e;
+					}
+					else {
+						failure.addSuppressed(e);
+					}
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+		String output = String.format("Dataset streamed: %d releases, %d rows", releases, rows);
+		logger.log(Level.INFO, output);
+	}
+
+
+	private void flush() throws IOException {
+		for (Writer w : new Writer[] {dataset, weka, cumulative, sliding}) {
+			if (w != null) {
+				w.flush();
+			}
+		}
+	}
+
+
+	private static Writer open(String projectName, String fileName, String header) throws IOException {
+		Writer writer = new BufferedWriter(new FileWriter(Parameters.OUTPUT_PATH + projectName + fileName));
+		writer.append(header);
+		return writer;
+	}
+}
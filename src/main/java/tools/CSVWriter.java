@@ -13,6 +13,7 @@ import weka.core.Instances;
 import weka.core.converters.ArffSaver;
 import weka.core.converters.CSVLoader;
 import weka.core.converters.ConverterUtils.DataSource;
+import data.MetricWindows;
 import data.Metrics;
 import data.ProjectClass;
 import git.GitCommit;
@@ -24,6 +25,10 @@ public class CSVWriter {
 	
 	private static Logger logger = Logger.getLogger(CSVWriter.class.getName());
 	
+	static final String CLASS_HEADER = "VersionID,VersionName,Path,Size,LOC_Touched,AVGLocAdded,LocAdded,MaxLocAdded,Churn,MaxChurn,"
+			+ "ChgSetSize,MaxChgSetSize,AVGChgSetSize,NumRevisions,NumBugFixed,NAuth,Age,Buggyness\n";
+	static final String WINDOW_HEADER = "VersionID;VersionName;Path;Size;NumRevisions;LocAdded;Churn;NumBugFixed;ChgSetSize;Age;Buggyness\n";
+	
 	private CSVWriter() {
 	}
 
@@ -66,10 +71,11 @@ public class CSVWriter {
 		String outputName = Parameters.OUTPUT_PATH + projectName + fileName + ".csv";
 
 		try (FileWriter fileWriter = new FileWriter(outputName)) {
-			StringBuilder outputBuilder = new StringBuilder("Index;Date;Message\n");
+			StringBuilder outputBuilder = new StringBuilder("Index;Date;TicketKeys\n");
 
+			// Il messaggio dei commit viene rilasciato dopo l'estrazione delle chiavi dei ticket
 			for (GitCommit c : commits) {
-				outputBuilder.append(c.getId() + ";" + c.getDate() + ";" + c.getMessage() + "\n");
+				outputBuilder.append(c.getId() + ";" + c.getDate() + ";" + String.join(" ", c.getTicketKeys()) + "\n");
 			}
 			fileWriter.append(outputBuilder.toString());
 
@@ -103,51 +109,32 @@ public class CSVWriter {
 		}
 	}
 
-	public static void writeClassOnCSV(List<ProjectClass> classes, String projectName, String fileName) {
-
-		try (FileWriter fileWriter = new FileWriter(Parameters.OUTPUT_PATH + projectName + fileName)) {
-			StringBuilder outputBuilder = new StringBuilder(
-					"VersionID;VersionName;Path;Size;LOC_Touched;AVGLocAdded;LocAdded;MaxLocAdded;Churn;MaxChurn;ChgSetSize;MaxChgSetSize;AVGChgSetSize;NumRevisions;NumBugFixed;NAuth;Age;Buggyness\n");
-
-			for (ProjectClass c : classes) {
-				Metrics metrics = c.getMetrics();
-				outputBuilder.append(c.getRelease().getId() + ";" + c.getRelease().getName() + ";" + c.getPath() + ";"
-						+ metrics.getSize() + ";" + metrics.getLocTouched() + ";" + metrics.getAvgLocAdded() + ";"
-						+ metrics.getLocAdded() + ";" + metrics.getMaxLocAdded() + ";" + metrics.getChurn() + ";"
-						+ metrics.getMaxChurn() + ";" + metrics.getChgSetSize() + ";" + metrics.getMaxChgSetSize() + ";"
-						+ metrics.getAvgChgSetSize() + ";" + metrics.getNumberRevisions() + ";"
-						+ metrics.getNumberBugFixes() + ";" + metrics.getnAuth() + ";" + metrics.getAge() + ";"
-						+ c.isBuggy());
-				outputBuilder.append("\n");
-			}
-			fileWriter.append(outputBuilder.toString());
-
-		} catch (Exception e) {
-			logger.log(Level.SEVERE, Parameters.CSV_ERROR, e);
-		}
+	/*
+	 * Riga del dataset (e del CSV per Weka) della classe, con il separatore in input
+	 */
+	static String getClassRow(ProjectClass c, String sep) {
+		Metrics metrics = c.getMetrics();
+		return c.getRelease().getId() + sep + c.getRelease().getName() + sep + c.getPath() + sep
+				+ metrics.getSize() + sep + metrics.getLocTouched() + sep + metrics.getAvgLocAdded() + sep
+				+ metrics.getLocAdded() + sep + metrics.getMaxLocAdded() + sep + metrics.getChurn() + sep
+				+ metrics.getMaxChurn() + sep + metrics.getChgSetSize() + sep + metrics.getMaxChgSetSize() + sep
+				+ metrics.getAvgChgSetSize() + sep + metrics.getNumberRevisions() + sep
+				+ metrics.getNumberBugFixes() + sep + metrics.getnAuth() + sep + metrics.getAge() + sep + c.isBuggy() + "\n";
 	}
 
-	public static void writeCSVForWeka(List<ProjectClass> classes, String projectName, String fileName) {
-
-		try (FileWriter fileWriter = new FileWriter(Parameters.OUTPUT_PATH + projectName + fileName)) {
-			StringBuilder outputBuilder = new StringBuilder(
-					"VersionID,VersionName,Path,Size,LOC_Touched,AVGLocAdded,LocAdded,MaxLocAdded,Churn,MaxChurn,ChgSetSize,MaxChgSetSize,AVGChgSetSize,NumRevisions,NumBugFixed,NAuth,Age,Buggyness\n");
-
-			for (ProjectClass c : classes) {
-				Metrics metrics = c.getMetrics();
-				outputBuilder.append(c.getRelease().getId() + "," + c.getRelease().getName() + "," + c.getPath() + ","
-						+ metrics.getSize() + "," + metrics.getLocTouched() + "," + metrics.getAvgLocAdded() + ","
-						+ metrics.getLocAdded() + "," + metrics.getMaxLocAdded() + "," + metrics.getChurn() + ","
-						+ metrics.getMaxChurn() + "," + metrics.getChgSetSize() + "," + metrics.getMaxChgSetSize() + ","
-						+ metrics.getAvgChgSetSize() + "," + metrics.getNumberRevisions() + ","
-						+ metrics.getNumberBugFixes() + "," + metrics.getnAuth() + "," + metrics.getAge() + "," + c.isBuggy());
-				outputBuilder.append("\n");
-			}
-			fileWriter.append(outputBuilder.toString());
-
-		} catch (Exception e) {
-			logger.log(Level.SEVERE, Parameters.CSV_ERROR, e);
-		}
+	/*
+	 * Riga del dataset con le metriche additive sulle ultime windowSize release fino a quella della classe
+	 * (windowSize <= 0: dalla prima release, cioè cumulative)
+	 */
+	static String getWindowRow(ProjectClass c, MetricWindows windows, int windowSize) {
+		return c.getRelease().getId() + ";" + c.getRelease().getName() + ";" + c.getPath() + ";"
+				+ c.getMetrics().getSize() + ";"
+				+ windows.getWindowSum(c, MetricWindows.REVISIONS, windowSize) + ";"
+				+ windows.getWindowSum(c, MetricWindows.LOC_ADDED, windowSize) + ";"
+				+ windows.getWindowSum(c, MetricWindows.CHURN, windowSize) + ";"
+				+ windows.getWindowSum(c, MetricWindows.BUG_FIXES, windowSize) + ";"
+				+ windows.getWindowSum(c, MetricWindows.CHG_SET_SIZE, windowSize) + ";"
+				+ c.getMetrics().getAge() + ";" + c.isBuggy() + "\n";
 	}
 
 	public static void writeResultOnCSV(List<WekaResult> results, String projectName, String fileName) {
@@ -3,7 +3,6 @@ package tools;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
-import java.util.Calendar;
 import java.util.Date;
 
 
@@ -34,9 +33,7 @@ public class DateHandler {
 	 * Ricava un oggetto Date dai millisecondi
 	 */
 	public static Date getDateFromEpoch(long millisecondsFromEpoch) {
-		Calendar calendar = Calendar.getInstance();
-		calendar.setTimeInMillis(millisecondsFromEpoch);	
-		return calendar.getTime();
+		return new Date(millisecondsFromEpoch);
 	}
 	
 	
@@ -1,5 +1,10 @@
 package tools;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.Timestamp;
 import java.util.List;
 import java.util.Scanner;
@@ -61,4 +66,25 @@ public class DebugTools {
 		return new Timestamp(System.currentTimeMillis()).toString();
 	}
 	
+	/*
+	 * Ritorna il picco della memoria residente del processo in MB (VmHWM, disponibile su Linux).
+	 * Se non disponibile ritorna la somma dei picchi dei memory pool della JVM
+	 */
+	public static long getPeakMemoryMB() {
+		try {
+			for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+				if (line.startsWith("VmHWM:")) {
+					return Long.parseLong(line.replaceAll("[^0-9]", "")) >> 10;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// Non disponibile: uso i memory pool della JVM
+		}
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			peak += pool.getPeakUsage() == null ? 0 : pool.getPeakUsage().getUsed();
+		}
+		return peak >> 20;
+	}
+	
 }
@@ -1,5 +1,7 @@
 package tools;
 
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+
 public class Parameters {
 	
 	private Parameters() {}
@@ -26,6 +28,30 @@ public class Parameters {
 	public static final String INCREMENTAL = "incremental";
 	public static final String MOVING_WINDOW = "moving_window";
 	
+	// Performance settings
+	public static final int THREADS = Runtime.getRuntime().availableProcessors();
+	public static final int SIZE_CACHE_ENTRIES = 500000;
+	public static final boolean PERSIST_SIZE_CACHE = true;
+	public static final boolean INCREMENTAL_SNAPSHOTS = true;
+	public static final boolean PACK_ORDER_PREFETCH = true;
+	public static final String OBJECT_CACHE_PROFILE = "BALANCED";		// DEFAULT, BALANCED o LARGE (vedi ObjectAccess.Profile)
+	public static final boolean PARALLEL_METRICS = true;
+	public static final boolean LINE_HASH_CACHE = true;
+	public static final int LINE_HASH_CACHE_ENTRIES = 4096;
+	public static final SupportedAlgorithm DIFF_ALGORITHM = SupportedAlgorithm.HISTOGRAM;
+	public static final boolean JAVA_ONLY_WALK = false;
+	public static final boolean GRAPH_RELEASE_ASSIGNMENT = true;
+	public static final boolean COMMIT_GRAPH = true;				// Ignorato con JAVA_ONLY_WALK
+	public static final boolean INCREMENTAL_MINING = true;
+	public static final boolean CHANGE_LOG = true;
+	public static final boolean METRIC_WINDOWS = true;
+	public static final int SLIDING_WINDOW_RELEASES = 3;
+	public static final boolean SPILL_MODE = false;
+	public static final long SPILL_HEAP_BUDGET_MB = 2048;
+	public static final boolean RENAME_CACHE = true;
+	public static final int RENAME_LIMIT = 400;
+	public static final boolean FOLLOW_RENAMES = false;		// Richiede RENAME_CACHE
+	
 	// Diffentries types
 	public static final String MODIFY = "MODIFY";
 	public static final String ADD = "ADD";
@@ -39,9 +65,17 @@ public class Parameters {
 	// Paths
 	public static final String OUTPUT_PATH = "output\\";
 	public static final String DATASET_CSV = "_Dataset.csv";
+	public static final String CUMULATIVE_CSV = "_Dataset_Cumulative.csv";
+	public static final String SLIDING_CSV = "_Dataset_Sliding.csv";
 	public static final String DATASET_ARFF = "_Dataset.arff";
 	public static final String WEKA_CSV = "_TempDataset.csv";
 	public static final String RESULT_CSV = "_AnalysisResult.csv";
+	public static final String SIZE_CACHE_FILE = "_SizeCache.bin";
+	public static final String CHECKPOINT_FILE = "_Checkpoint.bin";
+	public static final String CHANGE_LOG_FILE = "_ChangeLog.bin";
+	public static final String SPILL_FILE = "_Spill";
+	public static final String RENAME_CACHE_FILE = "_Renames.bin";
+	public static final String COMMIT_GRAPH_FILE = "_CommitGraph.bin";
 	
 	public static void setParameters(String projectName) {
 		Parameters.gitProjectName = projectName.toLowerCase();
@@ -56,6 +90,21 @@ public class Parameters {
 		return Parameters.jiraProjectName;
 	}
 	
+	/*
+	 * Impostazioni che cambiano il risultato dei diff (compresi i rename): i file salvati con impostazioni
+	 * diverse vengono scartati
+	 */
+	public static String getMiningSettings() {
+		return String.format("%s;%s;%s;%s;%s", DIFF_ALGORITHM, JAVA_ONLY_WALK, FILTER_FILE_TYPE, RENAME_CACHE, RENAME_LIMIT);
+	}
+	
+	/*
+	 * Impostazioni che cambiano il risultato del mining salvato nel checkpoint (diff e date di aggiunta)
+	 */
+	public static String getCheckpointSettings() {
+		return String.format("%s;%s", getMiningSettings(), FOLLOW_RENAMES);
+	}
+	
 	public static String getTagFormat() {
 		if (Parameters.gitProjectName.equalsIgnoreCase("bookkeeper"))
 			return Parameters.TAG_FORMAT_BOOKKEEPR;
@@ -0,0 +1,115 @@
+package tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import data.SlocCounter;
+
+/*
+ * Benchmark del calcolo della size: confronta il throughput (MB/s) del vecchio calcolo basato su
+ * Scanner + replaceAll con quello di SlocCounter, su tutti i file Java della cartella in input.
+ * Uso: SlocBenchmark [cartella] [iterazioni]
+ */
+public class SlocBenchmark {
+	
+	private static Logger logger = Logger.getLogger(SlocBenchmark.class.getName());
+	
+	private SlocBenchmark() {}
+	
+	public static void main(String[] args) throws IOException {
+		String folder = args.length > 0 ? args[0] : ".";
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		
+		List<byte[]> sources = loadSources(Paths.get(folder));
+		long totalBytes = 0;
+		for (byte[] s : sources) {
+			totalBytes += s.length;
+		}
+		logger.log(Level.INFO, String.format("%d files, %.2f MB", sources.size(), totalBytes / 1e6));
+		
+		// Warm-up del JIT
+		runLegacy(sources);
+		runStreaming(sources);
+		
+		long legacyNanos = 0;
+		long streamingNanos = 0;
+		long legacyLines = 0;
+		long streamingLines = 0;
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			legacyLines = runLegacy(sources);
+			legacyNanos += System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			streamingLines = runStreaming(sources);
+			streamingNanos += System.nanoTime() - start;
+		}
+		
+		double mb = totalBytes * (double) iterations / 1e6;
+		logger.log(Level.INFO, String.format("Scanner + replaceAll: %.1f MB/s (%d SLOC)", mb / (legacyNanos / 1e9), legacyLines));
+		logger.log(Level.INFO, String.format("SlocCounter: %.1f MB/s (%d SLOC)", mb / (streamingNanos / 1e9), streamingLines));
+	}
+	
+	
+	/*
+	 * Legge in memoria tutti i file Java presenti nella cartella (ricorsivamente)
+	 */
+	private static List<byte[]> loadSources(Path folder) throws IOException {
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(folder)) {
+			files = paths.filter(p -> p.toString().endsWith(Parameters.FILTER_FILE_TYPE)).collect(Collectors.toList());
+		}
+		List<byte[]> sources = new ArrayList<>();
+		for (Path p : files) {
+			sources.add(Files.readAllBytes(p));
+		}
+		return sources;
+	}
+	
+	private static long runStreaming(List<byte[]> sources) throws IOException {
+		long lines = 0;
+		for (byte[] s : sources) {
+			lines += SlocCounter.count(new ByteArrayInputStream(s));
+		}
+		return lines;
+	}
+	
+	private static long runLegacy(List<byte[]> sources) {
+		long lines = 0;
+		for (byte[] s : sources) {
+			lines += legacyCount(s);
+		}
+		return lines;
+	}
+	
+	
+	/*
+	 * Vecchia implementazione di Metrics.calculateSize, mantenuta solo come riferimento
+	 */
+	private static int legacyCount(byte[] data) {
+		String content = new String(data, StandardCharsets.UTF_8);
+		int calcSize = 0;
+		Scanner scanner = new Scanner(content);
+		while (scanner.hasNextLine()) {
+			String line = scanner.nextLine();
+			line = line.replaceAll("\\s+", "");
+			if (!(line.startsWith("/") || line.startsWith("*") || line.startsWith("//") || line.startsWith("*/")
+					|| line.equalsIgnoreCase(""))) {
+				calcSize = calcSize + 1;
+			}
+		}
+		scanner.close();
+		return calcSize;
+	}
+}
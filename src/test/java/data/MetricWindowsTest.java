@@ -0,0 +1,134 @@
+package data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import git.GitRelease;
+
+/*
+ * Le somme di MetricWindows devono rispettare i bordi delle finestre e valere 0 per i path senza revisioni
+ */
+public class MetricWindowsTest {
+
+	private List<GitRelease> releases;
+	private MetricWindows windows;
+	private int a;
+	private int b;
+
+	/*
+	 * Tre release: A ha due revisioni nella prima ed una nella terza, B una sola nella seconda
+	 */
+	@Before
+	public void setUp() {
+		StringDictionary.PATHS.clear();
+		a = StringDictionary.PATHS.getId("src/A.java");
+		b = StringDictionary.PATHS.getId("src/B.java");
+		releases = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			releases.add(new GitRelease(null, "release-" + i, new Date(i * 1000L), null, null));
+		}
+		windows = new MetricWindows(releases);
+		windows.addRevision(a, 0, 10, 12, false, 3);
+		windows.addRevision(a, 0, 5, 5, true, 1);
+		windows.completeRelease(0);
+		windows.addRevision(b, 1, 4, 4, true, 2);
+		windows.completeRelease(1);
+		windows.addRevision(a, 2, 7, 9, false, 5);
+		windows.build();
+	}
+
+
+	@Test
+	public void sums() {
+		assertEquals(15, windows.getSum(a, MetricWindows.LOC_ADDED, 0, 0));
+		assertEquals(0, windows.getSum(a, MetricWindows.LOC_ADDED, 1, 1));
+		assertEquals(7, windows.getSum(a, MetricWindows.LOC_ADDED, 2, 2));
+		assertEquals(22, windows.getSum(a, MetricWindows.LOC_ADDED, 0, 2));
+		assertEquals(3, windows.getSum(a, MetricWindows.REVISIONS, 0, 2));
+		assertEquals(26, windows.getSum(a, MetricWindows.CHURN, 0, 2));
+		assertEquals(1, windows.getSum(a, MetricWindows.BUG_FIXES, 0, 2));
+		assertEquals(9, windows.getSum(a, MetricWindows.CHG_SET_SIZE, 0, 2));
+		assertEquals(4, windows.getSum("src/B.java", MetricWindows.LOC_ADDED, 0, 2));
+	}
+
+
+	/*
+	 * Gli estremi fuori dalle release vengono troncati, un intervallo vuoto ha somma 0
+	 */
+	@Test
+	public void sumEdges() {
+		assertEquals(15, windows.getSum(a, MetricWindows.LOC_ADDED, -5, 0));
+		assertEquals(7, windows.getSum(a, MetricWindows.LOC_ADDED, 2, 10));
+		assertEquals(22, windows.getSum(a, MetricWindows.LOC_ADDED, -1, 3));
+		assertEquals(0, windows.getSum(a, MetricWindows.LOC_ADDED, 2, 1));
+		assertEquals(0, windows.getSum(a, MetricWindows.LOC_ADDED, 3, 5));
+		assertEquals(0, windows.getSum(a, MetricWindows.LOC_ADDED, -3, -1));
+	}
+
+
+	@Test
+	public void emptyPaths() {
+		int c = StringDictionary.PATHS.getId("src/C.java");
+		assertEquals(0, windows.getSum(c, MetricWindows.LOC_ADDED, 0, 2));
+		assertEquals(0, windows.getSum("src/Missing.java", MetricWindows.LOC_ADDED, 0, 2));
+		assertEquals(0, windows.getSum(StringDictionary.NOT_FOUND, MetricWindows.LOC_ADDED, 0, 2));
+		assertEquals(0, windows.getSum(1000, MetricWindows.LOC_ADDED, 0, 2));
+		assertEquals(0, windows.getWindowSum(new ProjectClass(c, releases.get(2)), MetricWindows.LOC_ADDED, 0));
+		assertEquals(2, windows.getPathCount());
+	}
+
+
+	/*
+	 * La finestra termina sulla release della classe; con windowSize <= 0 parte dalla prima release
+	 */
+	@Test
+	public void windowEdges() {
+		ProjectClass last = new ProjectClass(a, releases.get(2));
+		assertEquals(7, windows.getWindowSum(last, MetricWindows.LOC_ADDED, 1));
+		assertEquals(7, windows.getWindowSum(last, MetricWindows.LOC_ADDED, 2));
+		assertEquals(22, windows.getWindowSum(last, MetricWindows.LOC_ADDED, 3));
+		assertEquals(22, windows.getWindowSum(last, MetricWindows.LOC_ADDED, 10));
+		assertEquals(22, windows.getWindowSum(last, MetricWindows.LOC_ADDED, 0));
+		assertEquals(22, windows.getWindowSum(last, MetricWindows.LOC_ADDED, -1));
+
+		ProjectClass first = new ProjectClass(a, releases.get(0));
+		assertEquals(15, windows.getWindowSum(first, MetricWindows.LOC_ADDED, 1));
+		assertEquals(15, windows.getWindowSum(first, MetricWindows.LOC_ADDED, 0));
+
+		ProjectClass middle = new ProjectClass(b, releases.get(1));
+		assertEquals(1, windows.getWindowSum(middle, MetricWindows.REVISIONS, 1));
+		assertEquals(0, windows.getWindowSum(new ProjectClass(b, releases.get(0)), MetricWindows.REVISIONS, 1));
+	}
+
+
+	/*
+	 * Una classe di una release che non fa parte della lista non ha finestra
+	 */
+	@Test
+	public void unknownRelease() {
+		GitRelease other = new GitRelease(null, "other", new Date(), null, null);
+		assertEquals(0, windows.getWindowSum(new ProjectClass(a, other), MetricWindows.LOC_ADDED, 0));
+	}
+
+
+	/*
+	 * Le somme fino ad una release completata sono disponibili prima di aggiungere le release successive
+	 */
+	@Test
+	public void completedReleases() {
+		MetricWindows partial = new MetricWindows(releases);
+		partial.addRevision(a, 0, 10, 10, false, 1);
+		partial.completeRelease(0);
+		assertEquals(10, partial.getSum(a, MetricWindows.LOC_ADDED, 0, 0));
+		partial.addRevision(a, 1, 3, 3, false, 1);
+		assertEquals(10, partial.getSum(a, MetricWindows.LOC_ADDED, 0, 0));
+		partial.completeRelease(1);
+		assertEquals(13, partial.getSum(a, MetricWindows.LOC_ADDED, 0, 1));
+	}
+}
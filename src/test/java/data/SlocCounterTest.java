@@ -0,0 +1,74 @@
+package data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/*
+ * SlocCounter deve contare solo le linee con almeno un carattere non bianco fuori dai commenti
+ */
+public class SlocCounterTest {
+
+	@Test
+	public void emptyAndBlankLines() throws IOException {
+		assertEquals(0, count(""));
+		assertEquals(0, count("\n\n \t\n"));
+		assertEquals(1, count("int a;"));
+		assertEquals(2, count("int a;\n\n  \nint b;\n"));
+	}
+
+
+	@Test
+	public void lineComments() throws IOException {
+		assertEquals(0, count("// commento\n   // altro commento\n"));
+		assertEquals(1, count("int a; // commento\n"));
+		assertEquals(1, count("a = b / c;\n"));
+		assertEquals(1, count("/\n"));
+	}
+
+
+	@Test
+	public void blockComments() throws IOException {
+		assertEquals(0, count("/* commento */\n"));
+		assertEquals(0, count("/**\n * javadoc\n * con più linee\n */\n"));
+		assertEquals(1, count("/* commento */ int a;\n"));
+		assertEquals(1, count("int a; /* commento\n su due linee */\n"));
+		assertEquals(1, count("/* commento\n */ int a;\n"));
+		assertEquals(0, count("/* commento ** con asterischi **/\n"));
+		assertEquals(0, count("/* // non è un commento di linea\n */\n"));
+	}
+
+
+	/*
+	 * I delimitatori dei commenti dentro stringhe e caratteri non aprono commenti
+	 */
+	@Test
+	public void strings() throws IOException {
+		assertEquals(2, count("String s = \"/* non è un commento\";\nint a;\n"));
+		assertEquals(1, count("String url = \"http://host\"; int a;\n"));
+		assertEquals(2, count("String s = \"virgolette \\\" e /*\";\nint a;\n"));
+		assertEquals(2, count("char c = '\"';\nchar d = '/';\n"));
+		assertEquals(2, count("char c = '\\'';\nint a; /* commento */\n"));
+	}
+
+
+	/*
+	 * Lo stato di stringa non sopravvive alla fine della linea, quello del commento a blocco sì
+	 */
+	@Test
+	public void mixedLines() throws IOException {
+		assertEquals(2, count("String s = \"non chiusa\n/* commento */\nint a;\n"));
+		assertEquals(3, count("int a; /* inizio\n fine */ int b; // coda\n\n/* solo commento */\nint c;"));
+		assertEquals(2, count("int a;\r\nint b;\r\n"));
+		assertEquals(2, count("int a;\rint b;"));
+	}
+
+
+	private static int count(String source) throws IOException {
+		return SlocCounter.count(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+	}
+}
@@ -0,0 +1,100 @@
+package git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+/*
+ * GitRepo.bindRevisionsByDate() deve assegnare ad ogni commit la prima release con data successiva o
+ * uguale alla sua, anche quando le date coincidono o il commit precede la prima release
+ */
+public class BindRevisionsByDateTest {
+
+	private CommitTable table = new CommitTable();
+
+
+	@Test
+	public void equalDates() {
+		List<GitRelease> releases = releases(100, 200, 300);
+		List<GitCommit> commits = commits(100, 150, 200, 200, 300);
+		List<List<GitCommit>> bound = GitRepo.bindRevisionsByDate(commits, releases);
+
+		assertEquals(commits.subList(0, 1), bound.get(0));
+		assertEquals(commits.subList(1, 4), bound.get(1));
+		assertEquals(commits.subList(4, 5), bound.get(2));
+		assertSame(releases.get(0), commits.get(0).getRelease());
+		assertSame(releases.get(1), commits.get(3).getRelease());
+		assertSame(releases.get(2), commits.get(4).getRelease());
+	}
+
+
+	/*
+	 * Con due release alla stessa data i commit vanno tutti alla prima, la seconda resta vuota
+	 */
+	@Test
+	public void releasesOnSameDate() {
+		List<GitRelease> releases = releases(100, 100, 200);
+		List<GitCommit> commits = commits(100, 150);
+		List<List<GitCommit>> bound = GitRepo.bindRevisionsByDate(commits, releases);
+
+		assertEquals(commits.subList(0, 1), bound.get(0));
+		assertTrue(bound.get(1).isEmpty());
+		assertEquals(commits.subList(1, 2), bound.get(2));
+	}
+
+
+	/*
+	 * I commit precedenti alla prima release appartengono alla prima release, quelli all'epoch (o prima)
+	 * e quelli successivi all'ultima release a nessuna
+	 */
+	@Test
+	public void datesBeforeFirstRelease() {
+		List<GitRelease> releases = releases(100, 200);
+		List<GitCommit> commits = commits(0, 10, 99, 100, 250);
+		List<List<GitCommit>> bound = GitRepo.bindRevisionsByDate(commits, releases);
+
+		assertEquals(commits.subList(1, 4), bound.get(0));
+		assertTrue(bound.get(1).isEmpty());
+		assertNull(commits.get(0).getRelease());
+		assertSame(releases.get(0), commits.get(1).getRelease());
+		assertNull(commits.get(4).getRelease());
+	}
+
+
+	@Test
+	public void allCommitsBeforeFirstRelease() {
+		List<GitRelease> releases = releases(100, 200);
+		List<GitCommit> commits = commits(10, 20);
+		List<List<GitCommit>> bound = GitRepo.bindRevisionsByDate(commits, releases);
+
+		assertEquals(Arrays.asList(commits.get(0), commits.get(1)), bound.get(0));
+		assertTrue(bound.get(1).isEmpty());
+	}
+
+
+	private static List<GitRelease> releases(long... seconds) {
+		List<GitRelease> releases = new ArrayList<>();
+		for (int i = 0; i < seconds.length; i++) {
+			releases.add(new GitRelease(null, "release-" + i, new Date(seconds[i] * 1000), null, null));
+		}
+		return releases;
+	}
+
+	private List<GitCommit> commits(int... times) {
+		List<GitCommit> commits = new ArrayList<>();
+		for (int time : times) {
+			ObjectId id = ObjectId.fromRaw(new int[] { table.size() + 1, 0, 0, 0, 0 });
+			commits.add(new GitCommit(table, table.add(id, time, "")));
+		}
+		return commits;
+	}
+}
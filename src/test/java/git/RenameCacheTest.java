@@ -0,0 +1,182 @@
+package git;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffConfig;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tools.Parameters;
+
+/*
+ * Il risultato di RenameCache.detect() deve essere sempre quello del RenameDetector, sia quando viene
+ * calcolato sia quando viene ricostruito dalla cache (anche dopo save() e load())
+ */
+public class RenameCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Repository repository;
+	private ObjectReader reader;
+
+	@Before
+	public void setUp() throws Exception {
+		this.repository = Git.init().setDirectory(folder.newFolder("repo")).call().getRepository();
+		this.reader = repository.newObjectReader();
+	}
+
+	@After
+	public void tearDown() {
+		reader.close();
+		repository.close();
+	}
+
+
+	/*
+	 * Una coppia simile vista in un diff non deve vincere, in un altro diff, sulla copia esatta
+	 */
+	@Test
+	public void competingCandidates() throws IOException {
+		RenameCache cache = new RenameCache();
+		String text = lines("Foo", 20);
+		String similar = text.replace("Foo line 3", "Bar line 3");
+
+		Map<String, String> before = files("src/A.java", text);
+		Map<String, String> weak = files("src/C.java", similar);
+		Map<String, String> competing = files("src/B.java", text, "src/C.java", similar);
+
+		assertSameAsDetector(cache, before, weak);
+		assertSameAsDetector(cache, before, competing);
+		assertSameAsDetector(cache, before, weak);
+		assertSameAsDetector(cache, before, competing);
+		assertSameAsDetector(reload(cache), before, competing);
+	}
+
+
+	/*
+	 * Un rename già noto non deve portare sotto Parameters.RENAME_LIMIT un diff che lo supera
+	 */
+	@Test
+	public void overRenameLimit() throws IOException {
+		RenameCache cache = new RenameCache();
+		String text = lines("Moved", 20);
+		String similar = text.replace("Moved line 7", "Changed line 7");
+
+		assertSameAsDetector(cache, files("src/A.java", text), files("src/A2.java", similar));
+
+		for (int count : new int[] { Parameters.RENAME_LIMIT, Parameters.RENAME_LIMIT + 1 }) {
+			Map<String, String> before = files("src/A.java", text);
+			Map<String, String> after = files("src/A2.java", similar);
+			for (int i = 1; i < count; i++) {
+				before.put(String.format("old/F%04d.java", i), lines("Old" + i, 10));
+				after.put(String.format("new/F%04d.java", i), lines("New" + i, 10).replace("New" + i + " line 9", "Old" + i + " line 9"));
+			}
+			assertSameAsDetector(cache, before, after);
+			assertSameAsDetector(cache, before, after);
+			assertSameAsDetector(reload(cache), before, after);
+		}
+	}
+
+
+	/*
+	 * Il RenameDetector modifica le DiffEntry in input, quindi ognuno dei due riceve un diff appena calcolato
+	 */
+	private void assertSameAsDetector(RenameCache cache, Map<String, String> before, Map<String, String> after) throws IOException {
+		RenameDetector plain = new RenameDetector(reader, repository.getConfig().get(DiffConfig.KEY));
+		plain.setRenameLimit(Parameters.RENAME_LIMIT);
+		plain.addAll(diff(before, after));
+		List<String> expected = describe(plain.compute());
+
+		RenameDetector detector = new RenameDetector(reader, repository.getConfig().get(DiffConfig.KEY));
+		assertEquals(expected, describe(cache.detect(ObjectId.zeroId(), diff(before, after), detector)));
+	}
+
+	private RenameCache reload(RenameCache cache) throws IOException {
+		String fileName = new File(folder.getRoot(), "renames.bin").getPath();
+		cache.save(fileName);
+		return RenameCache.load(fileName);
+	}
+
+	private static List<String> describe(List<DiffEntry> entries) {
+		List<String> result = new ArrayList<>();
+		for (DiffEntry e : entries) {
+			result.add(String.format("%s %s %s %d", e.getChangeType(), e.getOldPath(), e.getNewPath(), e.getScore()));
+		}
+		return result;
+	}
+
+
+	/*
+	 * DiffEntry (senza rilevamento dei rename) tra due tree con i file in input
+	 */
+	private List<DiffEntry> diff(Map<String, String> before, Map<String, String> after) throws IOException {
+		try (TreeWalk walk = new TreeWalk(reader)) {
+			walk.setRecursive(true);
+			walk.addTree(tree(before));
+			walk.addTree(tree(after));
+			return DiffEntry.scan(walk);
+		}
+	}
+
+	private ObjectId tree(Map<String, String> files) throws IOException {
+		try (ObjectInserter inserter = repository.newObjectInserter()) {
+			Map<String, Map<String, String>> dirs = new TreeMap<>();
+			for (Map.Entry<String, String> f : files.entrySet()) {
+				int slash = f.getKey().indexOf('/');
+				dirs.computeIfAbsent(f.getKey().substring(0, slash), d -> new TreeMap<>())
+						.put(f.getKey().substring(slash + 1), f.getValue());
+			}
+			TreeFormatter root = new TreeFormatter();
+			for (Map.Entry<String, Map<String, String>> d : dirs.entrySet()) {
+				TreeFormatter dir = new TreeFormatter();
+				for (Map.Entry<String, String> f : d.getValue().entrySet()) {
+					dir.append(f.getKey(), FileMode.REGULAR_FILE,
+							inserter.insert(Constants.OBJ_BLOB, f.getValue().getBytes(StandardCharsets.UTF_8)));
+				}
+				root.append(d.getKey(), FileMode.TREE, inserter.insert(dir));
+			}
+			ObjectId id = inserter.insert(root);
+			inserter.flush();
+			return id;
+		}
+	}
+
+	private static Map<String, String> files(String... pathsAndContents) {
+		Map<String, String> files = new TreeMap<>();
+		for (int i = 0; i < pathsAndContents.length; i += 2) {
+			files.put(pathsAndContents[i], pathsAndContents[i + 1]);
+		}
+		return files;
+	}
+
+	private static String lines(String prefix, int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			sb.append(prefix).append(" line ").append(i).append('\n');
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,69 @@
+package git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+/*
+ * Le chiavi dei ticket devono essere riconosciute solo come chiavi intere ed il primo commit di un
+ * ticket è il primo, nell'ordine della lista, che lo cita
+ */
+public class TicketIndexTest {
+
+	@Test
+	public void wholeKeysOnly() {
+		assertEquals(Arrays.asList("BOOKKEEPER-123"), TicketIndex.extractTicketKeys("BOOKKEEPER-123: fix"));
+		assertEquals(Collections.emptyList(), TicketIndex.extractTicketKeys("XBOOKKEEPER-1x"));
+		assertEquals(Collections.emptyList(), TicketIndex.extractTicketKeys("xBOOKKEEPER-1"));
+		assertEquals(Collections.emptyList(), TicketIndex.extractTicketKeys("_BOOKKEEPER-1"));
+		assertEquals(Collections.emptyList(), TicketIndex.extractTicketKeys("1BOOKKEEPER-1"));
+		assertEquals(Collections.emptyList(), TicketIndex.extractTicketKeys("BOOKKEEPER-12a"));
+		assertEquals(Collections.emptyList(), TicketIndex.extractTicketKeys("BOOKKEEPER-12_x"));
+		assertEquals(Collections.emptyList(), TicketIndex.extractTicketKeys("bookkeeper-12"));
+		assertEquals(Collections.emptyList(), TicketIndex.extractTicketKeys("BOOKKEEPER-"));
+	}
+
+
+	@Test
+	public void keysInText() {
+		assertEquals(Arrays.asList("BOOKKEEPER-12"), TicketIndex.extractTicketKeys("[BOOKKEEPER-12]"));
+		assertEquals(Arrays.asList("BOOKKEEPER-12"), TicketIndex.extractTicketKeys("Fix (BOOKKEEPER-12)."));
+		assertEquals(Arrays.asList("OPENJPA-7", "AVRO_X-3"), TicketIndex.extractTicketKeys("OPENJPA-7,AVRO_X-3\nOPENJPA-7"));
+		assertEquals(Arrays.asList("BOOKKEEPER-1", "BOOKKEEPER-123"), TicketIndex.extractTicketKeys("BOOKKEEPER-1 BOOKKEEPER-123"));
+		assertTrue(TicketIndex.extractTicketKeys(null).isEmpty());
+	}
+
+
+	@Test
+	public void firstCommit() {
+		CommitTable table = new CommitTable();
+		List<GitCommit> commits = new ArrayList<>();
+		commits.add(commit(table, 1, "BOOKKEEPER-123: prima parte"));
+		commits.add(commit(table, 2, "BOOKKEEPER-1 e BOOKKEEPER-1 di nuovo"));
+		commits.add(commit(table, 3, "BOOKKEEPER-123: seconda parte, vedi BOOKKEEPER-1"));
+		commits.add(commit(table, 4, "nessun ticket"));
+		TicketIndex index = new TicketIndex(commits);
+
+		assertSame(commits.get(0), index.getFirstCommit("BOOKKEEPER-123"));
+		assertSame(commits.get(1), index.getFirstCommit("BOOKKEEPER-1"));
+		assertEquals(Arrays.asList(commits.get(0), commits.get(2)), index.getCommits("BOOKKEEPER-123"));
+		assertEquals(Arrays.asList(commits.get(1), commits.get(2)), index.getCommits("BOOKKEEPER-1"));
+		assertNull(index.getFirstCommit("BOOKKEEPER-12"));
+		assertTrue(index.getCommits("BOOKKEEPER-12").isEmpty());
+	}
+
+
+	private static GitCommit commit(CommitTable table, int time, String message) {
+		ObjectId id = ObjectId.fromRaw(new int[] { time, 0, 0, 0, 0 });
+		return new GitCommit(table, table.add(id, time, message));
+	}
+}